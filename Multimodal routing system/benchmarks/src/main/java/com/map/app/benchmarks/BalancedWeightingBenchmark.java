@@ -0,0 +1,150 @@
+package com.map.app.benchmarks;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import com.map.app.graphhopperfuncs.BalancedWeighting;
+import com.map.app.graphhopperfuncs.EdgeDataSnapshot;
+import com.map.app.graphhopperfuncs.EdgeDataStore;
+import com.map.app.service.RoutingConfig;
+import com.map.app.service.TransportMode;
+
+/**
+ * Edge relaxation throughput of the balanced weighting: the weight of every edge of a
+ * random graph in both directions, as a search explores them. Compares the former
+ * per-edge normalization (countDigit loop and Math.pow) with the global constants of
+ * ExposureNorms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BalancedWeightingBenchmark {
+	@Param({"10000", "100000"})
+	int nodes;
+
+	private GraphHopperStorage graph;
+	private EdgeExplorer explorer;
+	private Weighting former;
+	private Weighting balanced;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		EncodingManager encodingManager = EncodingManager.create("car");
+		FlagEncoder encoder = encodingManager.getEncoder("car");
+		graph = new GraphBuilder(encodingManager).create();
+		NodeAccess nodeAccess = graph.getNodeAccess();
+		for (int node = 0; node < nodes; node++) {
+			nodeAccess.setNode(node, 25.2 + random.nextDouble() * 0.3, 82.9 + random.nextDouble() * 0.3);
+		}
+		for (int i = 0; i < 3 * nodes; i++) {
+			EdgeIteratorState edge = graph.edge(random.nextInt(nodes), random.nextInt(nodes)).setDistance(20 + random.nextInt(500));
+			GHUtility.setSpeed(10 + random.nextInt(80), true, true, encoder, edge);
+		}
+		EdgeDataStore store = new EdgeDataStore(10, 1);
+		store.init(graph.getEdges());
+		float[] smoke = new float[graph.getEdges()];
+		for (int edge = 0; edge < smoke.length; edge++) {
+			smoke[edge] = 10 + random.nextInt(200);
+		}
+		EdgeDataSnapshot snapshot = store.publishSmoke(smoke);
+		RoutingConfig config = config();
+		former = new FormerBalancedWeighting(encoder, snapshot, config);
+		balanced = new BalancedWeighting(encoder, new PMap(), graph, snapshot, snapshot.getExposureNorms(graph, encodingManager), config);
+		explorer = graph.createEdgeExplorer();
+	}
+
+	@Benchmark
+	public double formerNormalization() {
+		return relaxAll(former);
+	}
+
+	@Benchmark
+	public double globalNorms() {
+		return relaxAll(balanced);
+	}
+
+	private double relaxAll(Weighting weighting) {
+		double sum = 0;
+		for (int node = 0; node < nodes; node++) {
+			EdgeIterator iter = explorer.setBaseNode(node);
+			while (iter.next()) {
+				sum += weighting.calcEdgeWeight(iter, false);
+			}
+		}
+		return sum;
+	}
+
+	private static RoutingConfig config() {
+		Properties prop = new Properties();
+		prop.setProperty("default_smoke", "10");
+		prop.setProperty("default_time", "1");
+		prop.setProperty("u_turn_costs", "40");
+		prop.setProperty("balanced_time_factor", "0.5");
+		prop.setProperty("balanced_pollution_factor", "0.5");
+		return new RoutingConfig(prop);
+	}
+
+	// the balanced weighting before the global normalization constants
+	private static class FormerBalancedWeighting extends FastestWeighting {
+		private final double timeFactor;
+		private final double pollutionFactor;
+		private final EdgeDataSnapshot snapshot;
+		private final TransportMode mode;
+
+		FormerBalancedWeighting(FlagEncoder encoder, EdgeDataSnapshot snapshot, RoutingConfig config) {
+			super(encoder);
+			this.timeFactor = config.getBalancedTimeFactor() / (config.getBalancedTimeFactor() + config.getBalancedPollutionFactor());
+			this.pollutionFactor = 1 - timeFactor;
+			this.snapshot = snapshot;
+			this.mode = TransportMode.valueOf(encoder.toString());
+		}
+
+		@Override
+		public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
+			int edge = snapshot.baseEdge(edgeState);
+			double smoke = snapshot.getSmoke(edge);
+			double timeG = snapshot.getTime(mode, edge);
+			double timeT = super.calcEdgeWeight(edgeState, reverse);
+			int power10 = countDigit((long) (smoke * pollutionFactor * timeG));
+			return timeFactor * timeT * Math.pow(10, power10) + smoke * pollutionFactor * timeG;
+		}
+
+		private static int countDigit(long n) {
+			int count = 0;
+			while (n != 0) {
+				n = n / 10;
+				++count;
+			}
+			return count - 1;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.map.app.benchmarks;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHBitSetImpl;
+
+/**
+ * Edge de-duplication of a traffic refresh: the snapped edge ids of all HERE shape
+ * points, consecutive points mostly snap to the same edge. Compares the former
+ * HashSet of boxed ids with the bitset of TrafficDataExtractor, run with
+ * -prof gc to see the allocated bytes per refresh (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EdgeDedupBenchmark {
+	@Param({"1000000", "4000000"})
+	int edges;
+
+	@Param({"500000"})
+	int points;
+
+	private int[] snappedEdges;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		snappedEdges = new int[points];
+		int edge = random.nextInt(edges);
+		for (int i = 0; i < points; i++) {
+			if (random.nextInt(4) == 0)
+				edge = random.nextInt(edges);
+			snappedEdges[i] = edge;
+		}
+	}
+
+	@Benchmark
+	public int hashSet() {
+		int updated = 0;
+		Set<Integer> edgeIds = new HashSet<>();
+		for (int edgeId : snappedEdges) {
+			if (edgeIds.contains(edgeId)) continue;
+			edgeIds.add(edgeId);
+			updated++;
+		}
+		return updated;
+	}
+
+	@Benchmark
+	public int bitSet() {
+		int updated = 0;
+		GHBitSet edgeIds = new GHBitSetImpl(edges);
+		for (int edgeId : snappedEdges) {
+			if (edgeIds.contains(edgeId)) continue;
+			edgeIds.add(edgeId);
+			updated++;
+		}
+		return updated;
+	}
+}
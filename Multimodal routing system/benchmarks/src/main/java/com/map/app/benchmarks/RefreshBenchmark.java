@@ -0,0 +1,77 @@
+package com.map.app.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.map.app.containers.TrafficDataExtractor;
+import com.map.app.graphhopperfuncs.EdgeDataSnapshot;
+import com.map.app.model.AirQuality;
+import com.map.app.model.TrafficData;
+
+/**
+ * Time of a refresh until the new edge data version is published: the air quality
+ * interpolation of all edges and a traffic feed. The feeds alternate between two sets
+ * of segments whose edges are already matched, as the hourly refreshes do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RefreshBenchmark {
+	@Param({"12", "100"})
+	int stations;
+
+	@Param({"500"})
+	int segments;
+
+	private RouterFixture fixture;
+	private ArrayList<AirQuality> airQuality;
+	private TrafficDataExtractor traffic;
+	private TrafficData[] feeds;
+	private int next;
+
+	@Setup
+	public void setup() {
+		fixture = new RouterFixture();
+		Random random = new Random(42);
+		airQuality = fixture.stations(random, stations);
+		traffic = fixture.getService().getTrafficDataExtractor();
+		feeds = new TrafficData[]{fixture.traffic(random, segments), fixture.traffic(random, segments)};
+		for (TrafficData feed : feeds) {
+			traffic.feed(feed);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		fixture.close();
+	}
+
+	@Benchmark
+	public EdgeDataSnapshot airQuality() {
+		return fixture.applyAirQuality(airQuality);
+	}
+
+	@Benchmark
+	public EdgeDataSnapshot trafficFeed() {
+		traffic.feed(feeds[next]);
+		next = 1 - next;
+		return fixture.getService().getEdgeDataStore().getCurrent();
+	}
+}
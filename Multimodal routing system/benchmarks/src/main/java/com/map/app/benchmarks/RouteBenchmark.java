@@ -0,0 +1,76 @@
+package com.map.app.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.map.app.containers.RoutePathContainer;
+import com.map.app.model.RoutePath;
+import com.map.app.model.UrlContainer;
+import com.map.app.service.PathChoice;
+import com.map.app.service.TrafficAndRoutingService;
+import com.map.app.service.TransportMode;
+
+/**
+ * Latency of RoutePathContainer.finalPath per profile and vehicle: the route between random
+ * points of the grid including the scores and instructions, with synthetic air quality and
+ * traffic applied. The route cache is off unless routeCacheSize is set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteBenchmark {
+	@Param({"fastest", "shortest", "greenest", "balanced"})
+	PathChoice pathChoice;
+
+	@Param({"car", "bike", "foot", "motorcycle"})
+	TransportMode mode;
+
+	// with -p routeCacheSize=2000 all requests are cache hits after the first round
+	@Param({"0"})
+	int routeCacheSize;
+
+	private RouterFixture fixture;
+	private RoutePathContainer routes;
+	private UrlContainer[] requests;
+	private String profile;
+	private int next;
+
+	@Setup
+	public void setup() {
+		fixture = new RouterFixture("route_cache_size=" + routeCacheSize + "\n");
+		Random random = new Random(42);
+		fixture.applyAirQuality(fixture.stations(random, 12));
+		fixture.getService().getTrafficDataExtractor().feed(fixture.traffic(random, 500));
+		routes = fixture.getService().getRoutePathContainer();
+		requests = fixture.requests(random, 256);
+		profile = TrafficAndRoutingService.getModeBasedPathChoice(pathChoice, mode);
+	}
+
+	@TearDown
+	public void tearDown() {
+		fixture.close();
+	}
+
+	@Benchmark
+	public RoutePath finalPath() {
+		UrlContainer request = requests[next];
+		next = (next + 1) % requests.length;
+		return routes.finalPath(request, profile, mode);
+	}
+}
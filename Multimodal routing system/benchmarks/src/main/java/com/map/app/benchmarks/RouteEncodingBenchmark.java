@@ -0,0 +1,169 @@
+package com.map.app.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import com.map.app.containers.RouteDeltaConverter;
+import com.map.app.model.PolylineSerializer;
+import com.map.app.model.RoutePath;
+import com.map.app.model.UrlContainer;
+
+/**
+ * Serialization of the /api/routing responses of 16 requests across the grid, the four path
+ * choices of a car each. Compares the former JSON with boxed point copies, the JSON streamed
+ * from the point lists, the JSON with polyline points and the binary delta format. The payload
+ * sizes are printed at the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RouteEncodingBenchmark {
+	private RouterFixture fixture;
+	private List<ArrayList<RoutePath>> responses;
+	private List<List<FormerRoutePath>> formerResponses;
+	private ObjectMapper json;
+	private ObjectMapper polyline;
+
+	@Setup
+	public void setup() throws JsonProcessingException {
+		fixture = new RouterFixture();
+		Random random = new Random(42);
+		fixture.applyAirQuality(fixture.stations(random, 12));
+		fixture.getService().getTrafficDataExtractor().feed(fixture.traffic(random, 500));
+		BBox bounds = fixture.getGraph().getBounds();
+		responses = new ArrayList<>();
+		formerResponses = new ArrayList<>();
+		for (int i = 0; i < 16; i++) {
+			// from near the west edge to near the east edge, long routes through the whole grid
+			double margin = (bounds.maxLon - bounds.minLon) / 100;
+			UrlContainer request = new UrlContainer();
+			request.setStartlat((float) (bounds.minLat + random.nextDouble() * (bounds.maxLat - bounds.minLat)));
+			request.setStartlon((float) (bounds.minLon + margin));
+			request.setEndlat((float) (bounds.minLat + random.nextDouble() * (bounds.maxLat - bounds.minLat)));
+			request.setEndlon((float) (bounds.maxLon - margin));
+			request.setVehicle("car");
+			request.setRouteType("all");
+			ArrayList<RoutePath> response = fixture.getService().getRoutePathContainer().find(request);
+			responses.add(response);
+			List<FormerRoutePath> former = new ArrayList<>();
+			for (RoutePath route : response) {
+				former.add(new FormerRoutePath(route));
+			}
+			formerResponses.add(former);
+		}
+		json = new ObjectMapper();
+		polyline = new ObjectMapper().addMixIn(RoutePath.class, PolylineRoutePath.class);
+		long formerBytes = 0, jsonBytes = 0, polylineBytes = 0, deltaBytes = 0;
+		for (int i = 0; i < responses.size(); i++) {
+			formerBytes += json.writeValueAsBytes(formerResponses.get(i)).length;
+			jsonBytes += json.writeValueAsBytes(responses.get(i)).length;
+			polylineBytes += polyline.writeValueAsBytes(responses.get(i)).length;
+			deltaBytes += RouteDeltaConverter.encode(responses.get(i)).length;
+		}
+		System.out.println("\nbytes of " + responses.size() + " responses: former json " + formerBytes + ", json " + jsonBytes
+				+ ", polyline " + polylineBytes + ", delta " + deltaBytes);
+	}
+
+	@TearDown
+	public void tearDown() {
+		fixture.close();
+	}
+
+	@Benchmark
+	public int formerJson() throws JsonProcessingException {
+		int bytes = 0;
+		for (List<FormerRoutePath> response : formerResponses) {
+			bytes += json.writeValueAsBytes(response).length;
+		}
+		return bytes;
+	}
+
+	@Benchmark
+	public int json() throws JsonProcessingException {
+		int bytes = 0;
+		for (ArrayList<RoutePath> response : responses) {
+			bytes += json.writeValueAsBytes(response).length;
+		}
+		return bytes;
+	}
+
+	@Benchmark
+	public int polyline() throws JsonProcessingException {
+		int bytes = 0;
+		for (ArrayList<RoutePath> response : responses) {
+			bytes += polyline.writeValueAsBytes(response).length;
+		}
+		return bytes;
+	}
+
+	@Benchmark
+	public int delta() {
+		int bytes = 0;
+		for (ArrayList<RoutePath> response : responses) {
+			bytes += RouteDeltaConverter.encode(response).length;
+		}
+		return bytes;
+	}
+
+	// the mixin of WebConfig for the polyline media type
+	private abstract static class PolylineRoutePath {
+		@JsonSerialize(using = PolylineSerializer.class)
+		abstract PointList getPoints();
+	}
+
+	// the route as it was before the points were streamed, a boxed point copy per route point
+	public static class FormerRoutePath {
+		private final ArrayList<GHPoint> points = new ArrayList<>();
+		private final RoutePath route;
+
+		FormerRoutePath(RoutePath route) {
+			this.route = route;
+		}
+
+		public ArrayList<GHPoint> getPoints() {
+			// copied at every serialization, as fillPath did for every route
+			points.clear();
+			PointList pl = route.getPoints();
+			for (int i = 0; i < pl.size(); i++) {
+				points.add(new GHPoint(pl.getLat(i), pl.getLon(i)));
+			}
+			return points;
+		}
+
+		public ArrayList<String> getNavigationInstruction() {
+			return route.getNavigationInstruction();
+		}
+
+		public ArrayList<Double> getBounds() {
+			return route.getBounds();
+		}
+
+		public HashMap<String, Float> getSummary() {
+			return route.getSummary();
+		}
+	}
+}
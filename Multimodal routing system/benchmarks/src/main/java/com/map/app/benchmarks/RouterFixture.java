@@ -0,0 +1,153 @@
+package com.map.app.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.shapes.BBox;
+import com.map.app.graphhopperfuncs.AirQualityBFS;
+import com.map.app.graphhopperfuncs.AirQualityIndex;
+import com.map.app.graphhopperfuncs.EdgeAnnotationEngine;
+import com.map.app.graphhopperfuncs.EdgeDataSnapshot;
+import com.map.app.model.AirQuality;
+import com.map.app.model.TrafficData;
+import com.map.app.model.UrlContainer;
+import com.map.app.service.RoutingConfig;
+import com.map.app.service.TrafficAndRoutingService;
+
+/**
+ * The router on the bundled grid.osm (50 x 50 streets in Varanasi) with synthetic air quality
+ * stations and traffic segments, so the benchmarks need no network. The graph is imported
+ * into a temp directory, landmarks are off so the routes do not depend on the background
+ * preparation and the route cache is off unless the extra config turns it on.
+ */
+public class RouterFixture implements AutoCloseable {
+	private final Path dir;
+	private final TrafficAndRoutingService service;
+	private final EdgeAnnotationEngine engine;
+
+	public RouterFixture() {
+		this("");
+	}
+
+	/**
+	 * @param extraConfig lines added to the config.properties of the fixture
+	 */
+	public RouterFixture(String extraConfig) {
+		try {
+			dir = Files.createTempDirectory("router-benchmark");
+			Path osm = dir.resolve("grid.osm");
+			try (InputStream in = RouterFixture.class.getResourceAsStream("/grid.osm")) {
+				Files.copy(in, osm);
+			}
+			Path config = dir.resolve("config.properties");
+			try (Writer writer = Files.newBufferedWriter(config)) {
+				writer.write("default_smoke=10\ndefault_time=1\nu_turn_costs=40\npass_through=false\ncurbside=false\n"
+						+ "turn_costs=true\nbalanced_time_factor=0.5\nbalanced_pollution_factor=0.5\n"
+						+ "graph.flag_encoders=car|turn_costs=true,bike|turn_costs=true,foot,motorcycle|turn_costs=true\n"
+						+ "graph.dataaccess=RAM_STORE\nprofiles_ch=\nprofiles_lm=\nroute_cache_size=0\n"
+						+ "waqi_api_key=<WAQI_API_KEY>\nhere_api_key=<HERE_API_KEY>\n"
+						+ "datareader.file=" + osm.toString().replace('\\', '/') + "\n" + extraConfig);
+			}
+			service = new TrafficAndRoutingService(config.toString(), dir.resolve("graph").toString());
+			engine = new EdgeAnnotationEngine(service.getConfigStore().getCurrent().getRefreshThreads());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public TrafficAndRoutingService getService() {
+		return service;
+	}
+
+	public GraphHopper getHopper() {
+		return service.getAirQualityDataExtractor().getHopper();
+	}
+
+	public Graph getGraph() {
+		return getHopper().getGraphHopperStorage().getBaseGraph();
+	}
+
+	/**
+	 * Publishes the smoke of the stations, AirQualityBFS.apply(calcSmoke()) without the printed station samples.
+	 */
+	public EdgeDataSnapshot applyAirQuality(ArrayList<AirQuality> stations) {
+		RoutingConfig config = service.getConfigStore().getCurrent();
+		AirQualityBFS airQualityBFS = new AirQualityBFS(getGraph(), stations, engine, service.getEdgeDataStore(), config);
+		float[] smoke = airQualityBFS.calcSmoke(new AirQualityIndex(stations, config.getIdwNeighbours(), config.getIdwCutoffKm()), config.getDefaultSmoke());
+		return service.getEdgeDataStore().publishSmoke(smoke);
+	}
+
+	/**
+	 * Stations spread over the grid with an aqi between 50 and 300.
+	 */
+	public ArrayList<AirQuality> stations(Random random, int count) {
+		BBox bounds = getGraph().getBounds();
+		ArrayList<AirQuality> stations = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			stations.add(new AirQuality(bounds.minLat + random.nextDouble() * (bounds.maxLat - bounds.minLat),
+					bounds.minLon + random.nextDouble() * (bounds.maxLon - bounds.minLon), 50 + random.nextInt(250), "station " + i));
+		}
+		return stations;
+	}
+
+	/**
+	 * Segments along random edges with an actual speed between 5 and 45 and a free flow speed of 50 km/h.
+	 */
+	public TrafficData traffic(Random random, int segments) {
+		Graph graph = getGraph();
+		NodeAccess nodeAccess = graph.getNodeAccess();
+		float[][] lats = new float[segments][];
+		float[][] lons = new float[segments][];
+		float[][] speeds = new float[segments][];
+		for (int i = 0; i < segments; i++) {
+			EdgeIteratorState edge = graph.getEdgeIteratorState(random.nextInt(graph.getEdges()), Integer.MIN_VALUE);
+			lats[i] = new float[]{(float) nodeAccess.getLat(edge.getBaseNode()), (float) nodeAccess.getLat(edge.getAdjNode())};
+			lons[i] = new float[]{(float) nodeAccess.getLon(edge.getBaseNode()), (float) nodeAccess.getLon(edge.getAdjNode())};
+			speeds[i] = new float[]{5 + random.nextInt(40), 50};
+		}
+		TrafficData data = new TrafficData();
+		data.setLat(lats);
+		data.setLons(lons);
+		data.setSpeed(speeds);
+		return data;
+	}
+
+	/**
+	 * Random start and end points within the grid.
+	 */
+	public UrlContainer[] requests(Random random, int count) {
+		BBox bounds = getGraph().getBounds();
+		UrlContainer[] requests = new UrlContainer[count];
+		for (int i = 0; i < count; i++) {
+			UrlContainer request = new UrlContainer();
+			request.setStartlat((float) (bounds.minLat + random.nextDouble() * (bounds.maxLat - bounds.minLat)));
+			request.setStartlon((float) (bounds.minLon + random.nextDouble() * (bounds.maxLon - bounds.minLon)));
+			request.setEndlat((float) (bounds.minLat + random.nextDouble() * (bounds.maxLat - bounds.minLat)));
+			request.setEndlon((float) (bounds.minLon + random.nextDouble() * (bounds.maxLon - bounds.minLon)));
+			requests[i] = request;
+		}
+		return requests;
+	}
+
+	@Override
+	public void close() {
+		getHopper().close();
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
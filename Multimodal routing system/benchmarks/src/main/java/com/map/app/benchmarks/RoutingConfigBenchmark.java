@@ -0,0 +1,71 @@
+package com.map.app.benchmarks;
+
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.map.app.service.RoutingConfigStore;
+
+/**
+ * Latency of looking up the u-turn costs of a route: reading and parsing
+ * config.properties, as finalPath, createWeighting, the BalancedWeighting
+ * constructor and GreenestWeighting.getMinWeight did on every call, compared
+ * to the RoutingConfig that is parsed once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RoutingConfigBenchmark {
+	private Path file;
+	private RoutingConfigStore store;
+
+	@Setup
+	public void setup() throws IOException {
+		file = Files.createTempFile("config", ".properties");
+		try (Writer writer = new FileWriter(file.toFile())) {
+			writer.write("default_smoke=10\ndefault_time=1\nu_turn_costs=40\npass_through=false\ncurbside=false\n"
+					+ "turn_costs=true\nbalanced_time_factor=0.5\nbalanced_pollution_factor=0.5\n"
+					+ "datareader.file=map.osm.pbf\ngraph.flag_encoders=car,bike,foot,motorcycle\n");
+		}
+		store = new RoutingConfigStore(file.toString());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.delete(file);
+	}
+
+	@Benchmark
+	public int propertiesFile() throws IOException {
+		Properties prop = new Properties();
+		try (FileInputStream ip = new FileInputStream(file.toFile())) {
+			prop.load(ip);
+			return Integer.parseInt(prop.getProperty("u_turn_costs"));
+		}
+	}
+
+	@Benchmark
+	public int routingConfig() {
+		return store.getCurrent().getUTurnCosts();
+	}
+}
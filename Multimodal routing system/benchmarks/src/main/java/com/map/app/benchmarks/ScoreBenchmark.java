@@ -0,0 +1,107 @@
+package com.map.app.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.details.PathDetail;
+import com.map.app.graphhopperfuncs.EdgeDataSnapshot;
+import com.map.app.graphhopperfuncs.EdgeDataStore;
+import com.map.app.graphhopperfuncs.RouteMetrics;
+import com.map.app.model.UrlContainer;
+import com.map.app.service.TransportMode;
+
+/**
+ * Scoring of calculated routes over the edge id details of 64 fastest car routes of the grid.
+ * Compares the former concentration and exposure scores, a pass over the route each, with
+ * the single pass of RouteMetrics that also gives the mean concentration and dose.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScoreBenchmark {
+	private static final TransportMode MODE = TransportMode.car;
+
+	private RouterFixture fixture;
+	private EdgeDataSnapshot snapshot;
+	private List<List<PathDetail>> routes;
+
+	@Setup
+	public void setup() {
+		fixture = new RouterFixture();
+		Random random = new Random(42);
+		fixture.applyAirQuality(fixture.stations(random, 12));
+		fixture.getService().getTrafficDataExtractor().feed(fixture.traffic(random, 500));
+		snapshot = fixture.getService().getEdgeDataStore().getCurrent();
+		routes = new ArrayList<>();
+		for (UrlContainer request : fixture.requests(random, 64)) {
+			GHResponse response = fixture.getHopper().route(new GHRequest(request.getStartlat(), request.getStartlon(), request.getEndlat(), request.getEndlon())
+					.setProfile("fastest_car")
+					.putHint(EdgeDataStore.SNAPSHOT_HINT, snapshot)
+					.setPathDetails(List.of(Parameters.Details.EDGE_ID)));
+			if (!response.hasErrors())
+				routes.add(response.getBest().getPathDetails().get(Parameters.Details.EDGE_ID));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		fixture.close();
+	}
+
+	@Benchmark
+	public double formerScores() {
+		double sum = 0;
+		for (List<PathDetail> route : routes) {
+			sum += calcConcentrationScore(snapshot, route) + calcExposureScore(snapshot, route, MODE);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double routeMetrics() {
+		double sum = 0;
+		for (List<PathDetail> route : routes) {
+			RouteMetrics metrics = new RouteMetrics(snapshot, MODE).addEdges(route);
+			sum += metrics.getConcentration() + metrics.getExposure() + metrics.getMeanConcentration() + metrics.getInhaledDose();
+		}
+		return sum;
+	}
+
+	// the scores of ScoreCalculator before RouteMetrics
+	private static double calcConcentrationScore(EdgeDataSnapshot snapshot, List<PathDetail> pathDetails) {
+		int score = 0;
+		for (PathDetail detail : pathDetails) {
+			score += snapshot.getSmoke((Integer) detail.getValue());
+		}
+		return score;
+	}
+
+	private static double calcExposureScore(EdgeDataSnapshot snapshot, List<PathDetail> pathDetails, TransportMode mode) {
+		double score = 0;
+		for (PathDetail detail : pathDetails) {
+			int edge = (Integer) detail.getValue();
+			score = score + snapshot.getSmoke(edge) * snapshot.getTime(mode, edge);
+		}
+		return score / Math.pow(10, 3);
+	}
+}
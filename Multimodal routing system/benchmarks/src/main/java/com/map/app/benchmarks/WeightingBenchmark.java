@@ -0,0 +1,81 @@
+package com.map.app.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.PMap;
+import com.map.app.graphhopperfuncs.EdgeDataStore;
+import com.map.app.service.PathChoice;
+import com.map.app.service.TrafficAndRoutingService;
+import com.map.app.service.TransportMode;
+
+/**
+ * Edge relaxation throughput of the weightings the router creates for a profile: calcEdgeWeight
+ * of every edge of the grid in both directions, as a search explores them. The fastest
+ * weighting is the baseline of the greenest and balanced ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WeightingBenchmark {
+	@Param({"fastest", "greenest", "balanced"})
+	PathChoice pathChoice;
+
+	@Param({"car", "foot"})
+	TransportMode mode;
+
+	private RouterFixture fixture;
+	private Graph graph;
+	private EdgeExplorer explorer;
+	private Weighting weighting;
+
+	@Setup
+	public void setup() {
+		fixture = new RouterFixture();
+		Random random = new Random(42);
+		fixture.applyAirQuality(fixture.stations(random, 12));
+		fixture.getService().getTrafficDataExtractor().feed(fixture.traffic(random, 500));
+		String profile = TrafficAndRoutingService.getModeBasedPathChoice(pathChoice, mode);
+		PMap hints = new PMap().putObject(EdgeDataStore.SNAPSHOT_HINT, fixture.getService().getEdgeDataStore().getCurrent());
+		weighting = fixture.getHopper().createWeighting(fixture.getHopper().getProfile(profile), hints);
+		graph = fixture.getGraph();
+		explorer = graph.createEdgeExplorer();
+	}
+
+	@TearDown
+	public void tearDown() {
+		fixture.close();
+	}
+
+	@Benchmark
+	public double calcEdgeWeight() {
+		double sum = 0;
+		for (int node = 0; node < graph.getNodes(); node++) {
+			EdgeIterator iter = explorer.setBaseNode(node);
+			while (iter.next()) {
+				sum += weighting.calcEdgeWeight(iter, false);
+			}
+		}
+		return sum;
+	}
+}
@@ -3,11 +3,11 @@ package com.map.app;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.FlagEncoder;
-import com.graphhopper.util.EdgeIteratorState;
 import com.map.app.containers.AirQualityDataExtractor;
 import com.map.app.containers.RoutePathContainer;
 import com.map.app.containers.TrafficDataExtractor;
 import com.map.app.containers.UrlTransformer;
+import com.map.app.graphhopperfuncs.EdgeDataSnapshot;
 import com.map.app.model.UrlContainer;
 import com.map.app.service.TrafficAndRoutingService;
 import com.map.app.service.TransportMode;
@@ -95,13 +95,10 @@ public class SensitivityAnalysis {
         AirQualityDataExtractor airQualityDataExtractor = trafficAndRoutingService.getAirQualityDataExtractor();
         AllEdgesIterator allEdges = airQualityDataExtractor.getHopper().getGraphHopperStorage().getBaseGraph().getAllEdges();
         initializeCSV("aqi_data_output", "aqi_data.csv", "edge", "smoke", "");
-        FlagEncoder encoder = airQualityDataExtractor.getHopper().getEncodingManager().getEncoder("car");
-        DecimalEncodedValue smokeEnc = encoder.getDecimalEncodedValue("smoke");
+        EdgeDataSnapshot snapshot = trafficAndRoutingService.getEdgeDataStore().getCurrent();
         while (allEdges.next()) {
-            int adjNode = allEdges.getAdjNode();
             int edgeId = allEdges.getEdge();
-            EdgeIteratorState edgeIterator = airQualityDataExtractor.getHopper().getGraphHopperStorage().getBaseGraph().getEdgeIteratorState(edgeId, adjNode);
-            writeResults("aqi_data_output", "aqi_data.csv", String.valueOf(edgeId), String.valueOf(edgeIterator.get(smokeEnc)), "");
+            writeResults("aqi_data_output", "aqi_data.csv", String.valueOf(edgeId), String.valueOf(snapshot.getSmoke(edgeId)), "");
         }
     }
 
@@ -110,13 +107,14 @@ public class SensitivityAnalysis {
         AllEdgesIterator allEdges = trafficDataExtractor.getHopper().getGraphHopperStorage().getBaseGraph().getAllEdges();
         initializeCSV("here_map_output", "here_map.csv", "edge", "average_speed", "travel_time");
         FlagEncoder encoder = trafficDataExtractor.getHopper().getEncodingManager().getEncoder("car");
-        DecimalEncodedValue avgTimeEnc = encoder.getDecimalEncodedValue("time");
         DecimalEncodedValue avgSpeedEnc = encoder.getAverageSpeedEnc();
+        EdgeDataSnapshot snapshot = trafficAndRoutingService.getEdgeDataStore().getCurrent();
         while (allEdges.next()) {
-            int adjNode = allEdges.getAdjNode();
             int edgeId = allEdges.getEdge();
-            EdgeIteratorState edgeIterator = trafficDataExtractor.getHopper().getGraphHopperStorage().getBaseGraph().getEdgeIteratorState(edgeId, adjNode);
-            writeResults("here_map_output", "here_map.csv", String.valueOf(edgeId), String.valueOf(edgeIterator.get(avgSpeedEnc)), String.valueOf(edgeIterator.get(avgTimeEnc)));
+            double speed = snapshot.getSpeed(TransportMode.car, edgeId);
+            if (Double.isNaN(speed))
+                speed = allEdges.get(avgSpeedEnc);
+            writeResults("here_map_output", "here_map.csv", String.valueOf(edgeId), String.valueOf(speed), String.valueOf(snapshot.getTime(TransportMode.car, edgeId)));
         }
     }
 
@@ -1,11 +1,22 @@
 package com.map.app;
 
+import java.util.List;
+
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.graphhopper.util.PointList;
+import com.map.app.containers.RouteDeltaConverter;
+import com.map.app.model.PolylineSerializer;
+import com.map.app.model.RoutePath;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
@@ -14,7 +25,25 @@ public class WebConfig implements WebMvcConfigurer {
         contentNegotiationConfigurer.defaultContentType(MediaType.ALL)
                                     .favorParameter(true)
                                     .parameterName("mediaType")
-                                    .mediaType("json", MediaType.APPLICATION_JSON);
+                                    .mediaType("json", MediaType.APPLICATION_JSON)
+                                    .mediaType("polyline", MediaType.valueOf(PolylineSerializer.MEDIA_TYPE))
+                                    .mediaType("delta", MediaType.valueOf(RouteDeltaConverter.MEDIA_TYPE));
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // ahead of the default JSON converter, that also accepts application/*+json
+        MappingJackson2HttpMessageConverter polyline = new MappingJackson2HttpMessageConverter(
+                Jackson2ObjectMapperBuilder.json().mixIn(RoutePath.class, PolylineRoutePath.class).build());
+        polyline.setSupportedMediaTypes(List.of(MediaType.valueOf(PolylineSerializer.MEDIA_TYPE)));
+        converters.add(0, polyline);
+        converters.add(0, new RouteDeltaConverter());
+    }
+
+    // the route with the points as an encoded polyline
+    private abstract static class PolylineRoutePath {
+        @JsonSerialize(using = PolylineSerializer.class)
+        abstract PointList getPoints();
     }
 
     @Override
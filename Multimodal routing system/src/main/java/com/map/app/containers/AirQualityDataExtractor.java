@@ -8,26 +8,30 @@ import java.util.HashSet;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.locks.Lock;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.graphhopper.util.shapes.BBox;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.storage.Graph;
 import com.map.app.graphhopperfuncs.AirQualityBFS;
+import com.map.app.graphhopperfuncs.EdgeAnnotationEngine;
+import com.map.app.graphhopperfuncs.EdgeDataStore;
 import com.map.app.model.AirQuality;
+import com.map.app.service.RoutingConfigStore;
 
 /**
  * @author Siftee, Amit
  */
 
 public class AirQualityDataExtractor {
-	private final JSONParser jsonP;
-	private final Lock writeLock;
+	private static final JsonFactory JSON = new JsonFactory();
+	private static final Pattern AQI = Pattern.compile("[0-9]+");
+	private final EdgeAnnotationEngine engine;
+	private final EdgeDataStore store;
+	private final RoutingConfigStore configStore;
 
 	public GraphHopper getHopper() {
 		return hopper;
@@ -37,15 +41,17 @@ public class AirQualityDataExtractor {
 	private String aqiApiKey = System.getenv("waqi_api_key");
 	private static final String url = "https://api.waqi.info/map/bounds/?latlng=";
 
-	public AirQualityDataExtractor(GraphHopper ghopper, Lock lock) {
+	public AirQualityDataExtractor(GraphHopper ghopper, EdgeAnnotationEngine engine, EdgeDataStore store, RoutingConfigStore configStore) {
 		hopper = ghopper;
-		this.jsonP = new JSONParser();
-		this.writeLock = lock;
+		this.configStore = configStore;
+		this.engine = engine;
+		this.store = store;
 		if (aqiApiKey ==null) {
 
 			Properties prop=new Properties();
 
-			try(FileInputStream fileInputStream = new FileInputStream("config.properties")) {
+			String file = configStore.getFile() == null ? "config.properties" : configStore.getFile().toString();
+			try(FileInputStream fileInputStream = new FileInputStream(file)) {
 				prop.load(fileInputStream);
 
 				aqiApiKey = prop.getProperty("waqi_api_key");
@@ -148,7 +154,6 @@ public void readWAQIData(BBox boundingBox) {
         throw new RuntimeException("API Key for AQI URL is not found. Aborting...");
     }
     try {
-        writeLock.lock();
         URL uri = new URL(url + boundingBox.minLat + "," + boundingBox.minLon + "," + boundingBox.maxLat + "," + boundingBox.maxLon + "&token=" + aqiApiKey);
         HttpURLConnection httpURLConnection = (HttpURLConnection) uri.openConnection();
         int responseCode = httpURLConnection.getResponseCode();
@@ -157,41 +162,14 @@ public void readWAQIData(BBox boundingBox) {
             throw new RuntimeException("HttpResponseCode: " + responseCode);
         }
 
-        ArrayList<AirQuality> airQualityArrayList = new ArrayList<>();
-        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(httpURLConnection.getInputStream()));
-        String inputLine;
-        StringBuilder response = new StringBuilder();
-
-        while ((inputLine = bufferedReader.readLine()) != null) {
-            response.append(inputLine);
+        ArrayList<AirQuality> airQualityArrayList;
+        // the stations are read from the stream, the response is not kept as a string
+        try (InputStream in = httpURLConnection.getInputStream()) {
+            airQualityArrayList = readStations(in);
         }
-
-        bufferedReader.close();
-
-        JSONObject obj = (JSONObject) jsonP.parse(response.toString());
-        JSONArray data = (JSONArray) obj.get("data");
-
-        for (Object datum : data) {
-            JSONObject obj1 = (JSONObject) datum;
-            double lat = (double) obj1.get("lat");
-            double lon = (double) obj1.get("lon");
-            String aqi = (String) obj1.get("aqi");
-
-            String regex = "[0-9]+";
-            Pattern pattern = Pattern.compile(regex);
-
-            if (aqi == null) {
-                continue;
-            }
-
-            Matcher matcher = pattern.matcher(aqi);
-
-            if (matcher.matches()) {
-                double aqiDouble = Double.parseDouble(aqi);
-                JSONObject obj2 = (JSONObject) obj1.get("station");
-                String name = (String) obj2.get("name");
-                airQualityArrayList.add(new AirQuality(lat, lon, aqiDouble, name));
-            }
+        if (airQualityArrayList == null) {
+            System.out.println("No data found in the WAQI response");
+            return;
         }
 
         // Print the API data
@@ -223,16 +201,70 @@ public void readWAQIData(BBox boundingBox) {
         System.out.println("=============================");
 
         Graph gh = hopper.getGraphHopperStorage().getBaseGraph();
-        AirQualityBFS airQualityBFS = new AirQualityBFS(hopper, gh, airQualityArrayList);
-        airQualityBFS.start(gh.createEdgeExplorer(), 0);
+        AirQualityBFS airQualityBFS = new AirQualityBFS(gh, airQualityArrayList, engine, store, configStore.getCurrent());
+        // routes keep using the previous version until the new smoke values are published
+        airQualityBFS.apply(airQualityBFS.calcSmoke());
     } catch (Exception e) {
         e.printStackTrace();
     } finally {
-        writeLock.unlock();
         System.out.println("WAQI API parsing done...");
     }
 }
 
+/**
+ * The stations of a WAQI map bounds response with a numeric aqi, null if it has no data.
+ */
+static ArrayList<AirQuality> readStations(InputStream in) throws IOException {
+    ArrayList<AirQuality> stations = null;
+    try (JsonParser parser = JSON.createParser(in)) {
+        if (parser.nextToken() != JsonToken.START_OBJECT)
+            return null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_ARRAY || !field.equals("data")) {
+                parser.skipChildren();
+                continue;
+            }
+            stations = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                double lat = Double.NaN;
+                double lon = Double.NaN;
+                String aqi = null;
+                String name = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String key = parser.getCurrentName();
+                    JsonToken token = parser.nextToken();
+                    if (key.equals("lat") && token.isNumeric()) {
+                        lat = parser.getDoubleValue();
+                    } else if (key.equals("lon") && token.isNumeric()) {
+                        lon = parser.getDoubleValue();
+                    } else if (key.equals("aqi") && token != JsonToken.VALUE_NULL) {
+                        aqi = parser.getText();
+                    } else if (key.equals("station") && token == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            boolean isName = parser.getCurrentName().equals("name");
+                            if (parser.nextToken() == JsonToken.VALUE_STRING && isName)
+                                name = parser.getText();
+                            else
+                                parser.skipChildren();
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                // stations without a reading have "-" as aqi
+                if (aqi != null && AQI.matcher(aqi).matches() && !Double.isNaN(lat) && !Double.isNaN(lon))
+                    stations.add(new AirQuality(lat, lon, Double.parseDouble(aqi), name));
+            }
+        }
+    }
+    return stations;
+}
+
 
 
 	// reading historical csv aqi data
@@ -264,65 +296,59 @@ public void readWAQIData(BBox boundingBox) {
 
 
     private void read_historical_aqi(ArrayList<AirQuality> ap) {
-        Properties prop = new Properties();
-        try (FileInputStream ip = new FileInputStream("config.properties")) {
-            prop.load(ip);
-            String aqPath = prop.getProperty("air_quality_file");
+        String aqPath = configStore.getCurrent().getAirQualityFile();
+
+        // Ensure file exists and is accessible
+        try (BufferedReader br = new BufferedReader(new FileReader(aqPath))) {
+            String newLine;
+            String[] strings;
             
-            // Ensure file exists and is accessible
-            try (BufferedReader br = new BufferedReader(new FileReader(aqPath))) {
-                String newLine;
-                String[] strings;
-                
-                // Skip the header
-                br.readLine();
-                
-                // Track unique locations to avoid duplicates
-                Set<String> uniqueLocations = new HashSet<>();
+            // Skip the header
+            br.readLine();
+            
+            // Track unique locations to avoid duplicates
+            Set<String> uniqueLocations = new HashSet<>();
+            
+            while ((newLine = br.readLine()) != null) {
+                strings = newLine.split(",");
                 
-                while ((newLine = br.readLine()) != null) {
-                    strings = newLine.split(",");
-                    
-                    // Format: local_time,city,latitude,longitude,AT,RH,PM2_5,PM10
-                    if (strings.length >= 8) {
-                        // Ensure that the values are not empty before parsing
-                        if (!strings[2].trim().isEmpty() && !strings[3].trim().isEmpty() && 
-                            !strings[6].trim().isEmpty()) {
+                // Format: local_time,city,latitude,longitude,AT,RH,PM2_5,PM10
+                if (strings.length >= 8) {
+                    // Ensure that the values are not empty before parsing
+                    if (!strings[2].trim().isEmpty() && !strings[3].trim().isEmpty() && 
+                        !strings[6].trim().isEmpty()) {
+                        
+                        try {
+                            // Parse values
+                            double latitude = Double.parseDouble(strings[2].trim());
+                            double longitude = Double.parseDouble(strings[3].trim());
                             
-                            try {
-                                // Parse values
-                                double latitude = Double.parseDouble(strings[2].trim());
-                                double longitude = Double.parseDouble(strings[3].trim());
-                                
-                                // Use PM2.5 as AQI value (could also use PM10 from strings[7])
-                                double pm25 = Double.parseDouble(strings[6].trim());
+                            // Use PM2.5 as AQI value (could also use PM10 from strings[7])
+                            double pm25 = Double.parseDouble(strings[6].trim());
+                            
+                            // Create a unique key for this location
+                            String locationKey = latitude + "," + longitude;
+                            
+                            // Only add if we haven't seen this location before
+                            if (!uniqueLocations.contains(locationKey)) {
+                                uniqueLocations.add(locationKey);
                                 
-                                // Create a unique key for this location
-                                String locationKey = latitude + "," + longitude;
+                                // Station name format: "City - Location"
+                                String stationName = strings[1].trim() + " - Historical";
                                 
-                                // Only add if we haven't seen this location before
-                                if (!uniqueLocations.contains(locationKey)) {
-                                    uniqueLocations.add(locationKey);
-                                    
-                                    // Station name format: "City - Location"
-                                    String stationName = strings[1].trim() + " - Historical";
-                                    
-                                    // Add parsed values to AirQuality object
-                                    ap.add(new AirQuality(latitude, longitude, pm25, stationName));
-                                }
-                            } catch (NumberFormatException e) {
-                                System.err.println("Invalid value in line: " + newLine);
+                                // Add parsed values to AirQuality object
+                                ap.add(new AirQuality(latitude, longitude, pm25, stationName));
                             }
+                        } catch (NumberFormatException e) {
+                            System.err.println("Invalid value in line: " + newLine);
                         }
                     }
                 }
-                
-                System.out.println("Loaded " + uniqueLocations.size() + " unique historical locations");
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to read air quality file: " + aqPath, e);
             }
+            
+            System.out.println("Loaded " + uniqueLocations.size() + " unique historical locations");
         } catch (IOException e) {
-            throw new RuntimeException("Failed to load config.properties", e);
+            throw new RuntimeException("Failed to read air quality file: " + aqPath, e);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package com.map.app.containers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.carrotsearch.hppc.FloatArrayList;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.map.app.model.TrafficData;
+
+/**
+ * Reads the flow segments of a HERE traffic v7 response token by token. Only the shape and the
+ * speeds of the current segment are buffered, segments are kept as float arrays when they pass
+ * the confidence and road class filter, the response itself is never held in memory.
+ */
+class HereFlowReader {
+	private static final JsonFactory JSON = new JsonFactory();
+
+	private final float maxFunctionalClass;
+	// the segment that is read, reused for all segments
+	private final FloatArrayList lats = new FloatArrayList();
+	private final FloatArrayList lons = new FloatArrayList();
+	private boolean hasLocation;
+	private boolean hasShape;
+	private boolean hasFlow;
+	private boolean hasSpeed;
+	private float functionalClass;
+	private float actualSpeed;
+	private float freeFlowSpeed;
+	private float confidence;
+
+	HereFlowReader(float maxFunctionalClass) {
+		this.maxFunctionalClass = maxFunctionalClass;
+	}
+
+	/**
+	 * The segments of the response, null if it has no results.
+	 */
+	TrafficData read(InputStream in) throws IOException {
+		List<float[]> segmentLats = new ArrayList<>();
+		List<float[]> segmentLons = new ArrayList<>();
+		List<float[]> segmentSpeeds = new ArrayList<>();
+		boolean hasResults = false;
+		try (JsonParser parser = JSON.createParser(in)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				return null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				if (parser.nextToken() != JsonToken.START_ARRAY || !field.equals("results")) {
+					parser.skipChildren();
+					continue;
+				}
+				hasResults = true;
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					if (parser.currentToken() != JsonToken.START_OBJECT) {
+						parser.skipChildren();
+						continue;
+					}
+					readResult(parser);
+					// the same filter as the former DOM parser
+					if (hasLocation && hasShape && hasFlow && hasSpeed && !lats.isEmpty()
+							&& confidence >= 0.7 && functionalClass <= maxFunctionalClass) {
+						segmentLats.add(lats.toArray());
+						segmentLons.add(lons.toArray());
+						segmentSpeeds.add(new float[]{actualSpeed, freeFlowSpeed});
+					}
+				}
+			}
+		}
+		if (!hasResults)
+			return null;
+		TrafficData data = new TrafficData();
+		data.setLat(segmentLats.toArray(new float[0][]));
+		data.setLons(segmentLons.toArray(new float[0][]));
+		data.setSpeed(segmentSpeeds.toArray(new float[0][]));
+		return data;
+	}
+
+	private void readResult(JsonParser parser) throws IOException {
+		lats.clear();
+		lons.clear();
+		hasLocation = hasShape = hasFlow = hasSpeed = false;
+		functionalClass = 5;
+		actualSpeed = freeFlowSpeed = confidence = 0;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (field.equals("location") && token == JsonToken.START_OBJECT) {
+				hasLocation = true;
+				readLocation(parser);
+			} else if (field.equals("currentFlow") && token == JsonToken.START_OBJECT) {
+				hasFlow = true;
+				readFlow(parser);
+			} else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	private void readLocation(JsonParser parser) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (field.equals("shape") && token == JsonToken.START_OBJECT) {
+				readShape(parser);
+			} else if (field.equals("functionalClass") && token.isNumeric()) {
+				functionalClass = parser.getFloatValue();
+			} else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	private void readShape(JsonParser parser) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			if (parser.nextToken() != JsonToken.START_ARRAY || !field.equals("coordinates")) {
+				parser.skipChildren();
+				continue;
+			}
+			hasShape = true;
+			while (parser.nextToken() != JsonToken.END_ARRAY) {
+				if (parser.currentToken() == JsonToken.START_OBJECT)
+					readCoordinate(parser);
+				else
+					parser.skipChildren();
+			}
+		}
+	}
+
+	private void readCoordinate(JsonParser parser) throws IOException {
+		float lat = Float.NaN;
+		float lng = Float.NaN;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (field.equals("lat") && token != JsonToken.VALUE_NULL) {
+				lat = floatValue(parser);
+			} else if (field.equals("lng") && token != JsonToken.VALUE_NULL) {
+				lng = floatValue(parser);
+			} else {
+				parser.skipChildren();
+			}
+		}
+		if (!Float.isNaN(lat) && !Float.isNaN(lng)) {
+			lats.add(lat);
+			lons.add(lng);
+		}
+	}
+
+	private void readFlow(JsonParser parser) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (field.equals("speed") && token == JsonToken.START_OBJECT) {
+				hasSpeed = true;
+				readSpeed(parser);
+			} else if (field.equals("confidence") && token != JsonToken.VALUE_NULL) {
+				// percentage to 0-1
+				confidence = floatValue(parser) / 100f;
+			} else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	private void readSpeed(JsonParser parser) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (field.equals("actual") && token != JsonToken.VALUE_NULL) {
+				actualSpeed = floatValue(parser);
+			} else if (field.equals("freeFlow") && token != JsonToken.VALUE_NULL) {
+				freeFlowSpeed = floatValue(parser);
+			} else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	// numbers are read without a string, quoted numbers are parsed
+	private static float floatValue(JsonParser parser) throws IOException {
+		return parser.currentToken().isNumeric() ? parser.getFloatValue() : Float.parseFloat(parser.getText());
+	}
+}
@@ -0,0 +1,140 @@
+package com.map.app.containers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.graphhopper.util.shapes.BBox;
+import com.map.app.model.TrafficData;
+
+/**
+ * Fetches the HERE flow tiles of a bounding box at the same time and merges their segments, so
+ * a refresh takes as long as the slowest tile and the edges are updated once for all tiles.
+ * The client keeps its connections open between tiles and refreshes, at most threads tiles are
+ * requested and parsed at once.
+ */
+public class HereTileFetcher {
+	public static final String FLOW_URL = "https://data.traffic.hereapi.com/v7/flow";
+	// HERE Traffic API v7 requires bounding box width and height to be at most 1 degree
+	private static final double MAX_TILE_DEGREES = 1.0;
+
+	private final String flowUrl;
+	private final HttpClient client;
+	private final ExecutorService executor;
+
+	public HereTileFetcher(String flowUrl, int threads) {
+		this.flowUrl = flowUrl;
+		this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "here-tile-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * The tiles of at most 1 x 1 degree that cover the bounding box.
+	 */
+	public static List<BBox> tiles(BBox boundingBox) {
+		double width = boundingBox.maxLon - boundingBox.minLon;
+		double height = boundingBox.maxLat - boundingBox.minLat;
+		int lonSplits = Math.max(1, (int) Math.ceil(width / MAX_TILE_DEGREES));
+		int latSplits = Math.max(1, (int) Math.ceil(height / MAX_TILE_DEGREES));
+		double lonStep = width / lonSplits;
+		double latStep = height / latSplits;
+		List<BBox> tiles = new ArrayList<>(lonSplits * latSplits);
+		for (int i = 0; i < lonSplits; i++) {
+			double minLon = boundingBox.minLon + (i * lonStep);
+			double maxLon = i == lonSplits - 1 ? boundingBox.maxLon : minLon + lonStep;
+			for (int j = 0; j < latSplits; j++) {
+				double minLat = boundingBox.minLat + (j * latStep);
+				double maxLat = j == latSplits - 1 ? boundingBox.maxLat : minLat + latStep;
+				tiles.add(new BBox(minLon, maxLon, minLat, maxLat));
+			}
+		}
+		return tiles;
+	}
+
+	/**
+	 * The segments of all tiles in tile order, null if no tile returned results. A tile that
+	 * fails is left out.
+	 */
+	public TrafficData fetch(String apiKey, BBox boundingBox, float maxFunctionalClass) {
+		List<BBox> tiles = tiles(boundingBox);
+		if (tiles.size() > 1)
+			System.out.println("Splitting bounding box into " + tiles.size() + " tiles");
+		List<Future<TrafficData>> futures = new ArrayList<>(tiles.size());
+		for (BBox tile : tiles) {
+			futures.add(executor.submit(() -> fetchTile(apiKey, tile, maxFunctionalClass)));
+		}
+		List<TrafficData> results = new ArrayList<>(tiles.size());
+		for (Future<TrafficData> future : futures) {
+			try {
+				TrafficData tile = future.get();
+				if (tile != null)
+					results.add(tile);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while fetching the traffic tiles", e);
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+			}
+		}
+		return results.isEmpty() ? null : merge(results);
+	}
+
+	private TrafficData fetchTile(String apiKey, BBox tile, float maxFunctionalClass) throws IOException, InterruptedException {
+		// HERE Traffic API v7 format: in=bbox:{westLongitude},{southLatitude},{eastLongitude},{northLatitude}
+		String url = flowUrl
+				+ "?apiKey=" + apiKey
+				+ "&in=bbox:" + tile.minLon + "," + tile.minLat + ","
+				+ tile.maxLon + "," + tile.maxLat
+				+ "&locationReferencing=shape"
+				+ "&return=shape,functional_class,speed"
+				+ "&units=metric";
+		HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(60)).GET().build();
+		HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+		try (InputStream in = response.body()) {
+			if (response.statusCode() != 200)
+				throw new IOException("HttpResponseCode: " + response.statusCode() + " for tile " + tile);
+			return new HereFlowReader(maxFunctionalClass).read(in);
+		}
+	}
+
+	private static TrafficData merge(List<TrafficData> tiles) {
+		if (tiles.size() == 1)
+			return tiles.get(0);
+		int segments = 0;
+		for (TrafficData tile : tiles) {
+			segments += tile.getLat().length;
+		}
+		float[][] lat = new float[segments][];
+		float[][] lons = new float[segments][];
+		float[][] speed = new float[segments][];
+		int pos = 0;
+		for (TrafficData tile : tiles) {
+			int length = tile.getLat().length;
+			System.arraycopy(tile.getLat(), 0, lat, pos, length);
+			System.arraycopy(tile.getLons(), 0, lons, pos, length);
+			System.arraycopy(tile.getSpeed(), 0, speed, pos, length);
+			pos += length;
+		}
+		TrafficData merged = new TrafficData();
+		merged.setLat(lat);
+		merged.setLons(lons);
+		merged.setSpeed(speed);
+		return merged;
+	}
+}
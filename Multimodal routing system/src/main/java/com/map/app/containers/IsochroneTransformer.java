@@ -0,0 +1,74 @@
+package com.map.app.containers;
+
+import com.graphhopper.util.shapes.GHPoint;
+import com.map.app.model.IsochroneContainer;
+
+/**
+ * Request parameters of the isochrone, the location is "lon,lat". Without an exposure limit only the time limits the area,
+ * the exposure limit is the inhaled dose of the route summary.
+ */
+public class IsochroneTransformer {
+	private String Location;
+	private String Vehicle;
+	private Double TimeLimit;
+	private Double ExposureLimit;
+	//getters and setters
+	public String getLocation() {
+		return Location;
+	}
+	public void setLocation(String location) {
+		Location = location;
+	}
+	public String getVehicle() {
+		return Vehicle;
+	}
+	public void setVehicle(String vehicle) {
+		Vehicle = vehicle;
+	}
+	public Double getTimeLimit() {
+		return TimeLimit;
+	}
+	public void setTimeLimit(Double timeLimit) {
+		TimeLimit = timeLimit;
+	}
+	public Double getExposureLimit() {
+		return ExposureLimit;
+	}
+	public void setExposureLimit(Double exposureLimit) {
+		ExposureLimit = exposureLimit;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the location, vehicle or time limit is missing or the location is not "lon,lat"
+	 */
+	public IsochroneContainer convert() {
+		//converting dto layer to model layer
+		IsochroneContainer ic = new IsochroneContainer();
+		if (this.getLocation() == null)
+			throw new IllegalArgumentException("Location is missing");
+		String[] coords = this.getLocation().split(",");
+		if (coords.length != 2)
+			throw new IllegalArgumentException("Location " + this.getLocation() + " is not lon,lat");
+		// a NumberFormatException is an IllegalArgumentException too
+		float lat = Float.parseFloat(coords[1].trim());
+		float lon = Float.parseFloat(coords[0].trim());
+		if (!(Math.abs(lat) <= 90 && Math.abs(lon) <= 180))
+			throw new IllegalArgumentException("Location " + this.getLocation() + " is out of range");
+		ic.setLocation(new GHPoint(lat, lon));
+		if (this.getVehicle() == null)
+			throw new IllegalArgumentException("Vehicle is missing");
+		ic.setVehicle(this.getVehicle());
+		if (this.getTimeLimit() == null)
+			throw new IllegalArgumentException("TimeLimit is missing");
+		ic.setTimeLimit(this.getTimeLimit());
+		ic.setExposureLimit(this.getExposureLimit() == null ? Double.POSITIVE_INFINITY : this.getExposureLimit());
+		return ic;
+	}
+
+	@Override
+	public String toString() {
+		return "IsochroneDto [ Location=" + Location + ", Vehicle=" + Vehicle + ", TimeLimit=" + TimeLimit +
+			", ExposureLimit=" + ExposureLimit + "]";
+	}
+
+}
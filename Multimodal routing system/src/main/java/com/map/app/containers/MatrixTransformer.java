@@ -0,0 +1,84 @@
+package com.map.app.containers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.graphhopper.util.shapes.GHPoint;
+import com.map.app.model.MatrixContainer;
+
+/**
+ * Request parameters of the matrix, the sources and targets are "lon,lat" locations separated by ";".
+ */
+public class MatrixTransformer {
+	private String Sources;
+	private String Targets;
+	private String RouteType;
+	private String Vehicle;
+	//getters and setters
+	public String getSources() {
+		return Sources;
+	}
+	public void setSources(String sources) {
+		Sources = sources;
+	}
+	public String getTargets() {
+		return Targets;
+	}
+	public void setTargets(String targets) {
+		Targets = targets;
+	}
+	public String getRouteType() {
+		return RouteType;
+	}
+	public void setRouteType(String routeType) {
+		RouteType = routeType;
+	}
+	public String getVehicle() {
+		return Vehicle;
+	}
+	public void setVehicle(String vehicle) {
+		Vehicle = vehicle;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if a parameter is missing or a location is not "lon,lat"
+	 */
+	public MatrixContainer convert() {
+		//converting dto layer to model layer
+		MatrixContainer mc = new MatrixContainer();
+		mc.setSources(parse("Sources", this.getSources()));
+		mc.setTargets(parse("Targets", this.getTargets()));
+		if (this.getVehicle() == null)
+			throw new IllegalArgumentException("Vehicle is missing");
+		if (this.getRouteType() == null)
+			throw new IllegalArgumentException("RouteType is missing");
+		mc.setRouteType(this.getRouteType());
+		mc.setVehicle(this.getVehicle());
+		return mc;
+	}
+
+	private static List<GHPoint> parse(String name, String locations) {
+		if (locations == null || locations.isBlank())
+			throw new IllegalArgumentException(name + " is missing");
+		List<GHPoint> points = new ArrayList<>();
+		for (String location : locations.split(";")) {
+			String[] coords = location.split(",");
+			if (coords.length != 2)
+				throw new IllegalArgumentException("Location " + location + " of " + name + " is not lon,lat");
+			// a NumberFormatException is an IllegalArgumentException too
+			float lat = Float.parseFloat(coords[1].trim());
+			float lon = Float.parseFloat(coords[0].trim());
+			if (!(Math.abs(lat) <= 90 && Math.abs(lon) <= 180))
+				throw new IllegalArgumentException("Location " + location + " of " + name + " is out of range");
+			points.add(new GHPoint(lat, lon));
+		}
+		return points;
+	}
+
+	@Override
+	public String toString() {
+		return "MatrixDto [ Sources=" + Sources + ", Targets=" + Targets + ", RouteType=" + RouteType +
+			", Vehicle=" + Vehicle + "]";
+	}
+
+}
@@ -0,0 +1,189 @@
+package com.map.app.containers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.graphhopper.storage.index.Snap;
+import com.map.app.model.RouteCacheStats;
+import com.map.app.model.RoutePath;
+import com.map.app.service.RoutingConfig;
+
+/**
+ * The last used routes of a profile, edge data version and settings, kept under the snapped start
+ * and end, which also match other coordinates that snap to the same points. The request coordinates
+ * of a route are kept as an alias of its snapped key, they are found without snapping. A route of an
+ * older version or of replaced settings is never found again and leaves the cache as the least
+ * recently used entry. The capacity counts routes, a route can have a few aliases.
+ */
+class RouteCache {
+	// request coordinates kept per route on average
+	private static final int ALIASES_PER_ROUTE = 4;
+
+	private final int capacity;
+	private final Map<Key, RoutePath> routes;
+	// snapped key by request key, an alias of an evicted route is removed when it is found
+	private final Map<Key, Key> aliases;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public RouteCache(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Route cache capacity must be positive but was " + capacity);
+		this.capacity = capacity;
+		// access order, the eldest entry is the least recently used one
+		this.routes = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, RoutePath> eldest) {
+				if (size() <= RouteCache.this.capacity)
+					return false;
+				evictions.increment();
+				return true;
+			}
+		};
+		this.aliases = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Key> eldest) {
+				return size() > ALIASES_PER_ROUTE * RouteCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * The route of the same request coordinates, counted as a hit if found.
+	 */
+	public RoutePath getRequest(Key requestKey) {
+		RoutePath route;
+		synchronized (routes) {
+			Key snappedKey = aliases.get(requestKey);
+			route = snappedKey == null ? null : routes.get(snappedKey);
+			if (snappedKey != null && route == null)
+				aliases.remove(requestKey);
+		}
+		if (route != null)
+			hits.increment();
+		return route;
+	}
+
+	/**
+	 * The route of the same snapped points, for request coordinates that are not in the cache.
+	 * The request coordinates of a route that is found become an alias of it.
+	 * @param snappedKey null if a point was not found
+	 */
+	public RoutePath getSnapped(Key requestKey, Key snappedKey) {
+		RoutePath route = null;
+		if (snappedKey != null) {
+			synchronized (routes) {
+				route = routes.get(snappedKey);
+				if (route != null)
+					aliases.put(requestKey, snappedKey);
+			}
+		}
+		if (route == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return route;
+	}
+
+	/**
+	 * Keeps the route, unless a point was not snapped.
+	 */
+	public void put(Key requestKey, Key snappedKey, RoutePath route) {
+		if (snappedKey == null)
+			return;
+		synchronized (routes) {
+			routes.put(snappedKey, route);
+			aliases.put(requestKey, snappedKey);
+		}
+	}
+
+	public RouteCacheStats getStats() {
+		RouteCacheStats stats = new RouteCacheStats();
+		synchronized (routes) {
+			stats.setSize(routes.size());
+		}
+		stats.setCapacity(capacity);
+		stats.setHits(hits.sum());
+		stats.setMisses(misses.sum());
+		stats.setEvictions(evictions.sum());
+		return stats;
+	}
+
+	/**
+	 * Routes are equal for equal snaps: the query graph is built from the snapped edge, the segment of
+	 * its geometry and the snapped point. The key of the request coordinates has no edges. The settings
+	 * are compared by instance, a reload replaces them.
+	 */
+	static class Key {
+		private final String profile;
+		private final long version;
+		private final RoutingConfig config;
+		private final int fromEdge;
+		private final int fromWayIndex;
+		private final double fromLat;
+		private final double fromLon;
+		private final int toEdge;
+		private final int toWayIndex;
+		private final double toLat;
+		private final double toLon;
+		private final int hash;
+
+		Key(String profile, long version, RoutingConfig config, Snap from, Snap to) {
+			this(profile, version, config, from.getClosestEdge().getEdge(), from.getWayIndex(), from.getSnappedPoint().lat, from.getSnappedPoint().lon,
+					to.getClosestEdge().getEdge(), to.getWayIndex(), to.getSnappedPoint().lat, to.getSnappedPoint().lon);
+		}
+
+		Key(String profile, long version, RoutingConfig config, double fromLat, double fromLon, double toLat, double toLon) {
+			this(profile, version, config, -1, -1, fromLat, fromLon, -1, -1, toLat, toLon);
+		}
+
+		private Key(String profile, long version, RoutingConfig config, int fromEdge, int fromWayIndex, double fromLat, double fromLon,
+				int toEdge, int toWayIndex, double toLat, double toLon) {
+			this.profile = profile;
+			this.version = version;
+			this.config = config;
+			this.fromEdge = fromEdge;
+			this.fromWayIndex = fromWayIndex;
+			this.fromLat = fromLat;
+			this.fromLon = fromLon;
+			this.toEdge = toEdge;
+			this.toWayIndex = toWayIndex;
+			this.toLat = toLat;
+			this.toLon = toLon;
+			int h = profile.hashCode();
+			h = 31 * h + Long.hashCode(version);
+			h = 31 * h + System.identityHashCode(config);
+			h = 31 * h + fromEdge;
+			h = 31 * h + fromWayIndex;
+			h = 31 * h + Double.hashCode(fromLat);
+			h = 31 * h + Double.hashCode(fromLon);
+			h = 31 * h + toEdge;
+			h = 31 * h + toWayIndex;
+			h = 31 * h + Double.hashCode(toLat);
+			h = 31 * h + Double.hashCode(toLon);
+			this.hash = h;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (!(o instanceof Key))
+				return false;
+			Key other = (Key) o;
+			return hash == other.hash && version == other.version && config == other.config
+					&& fromEdge == other.fromEdge && fromWayIndex == other.fromWayIndex && toEdge == other.toEdge && toWayIndex == other.toWayIndex
+					&& Double.compare(fromLat, other.fromLat) == 0 && Double.compare(fromLon, other.fromLon) == 0
+					&& Double.compare(toLat, other.toLat) == 0 && Double.compare(toLon, other.toLon) == 0
+					&& profile.equals(other.profile);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
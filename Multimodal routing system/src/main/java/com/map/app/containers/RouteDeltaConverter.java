@@ -0,0 +1,279 @@
+package com.map.app.containers;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import com.graphhopper.util.PointList;
+import com.map.app.model.RoutePath;
+
+/**
+ * Writes and reads the routes of /api/routing in a compact binary format. The points are the
+ * differences to the previous point in 10^-6 degrees as zigzag varints, about 2 to 4 bytes a
+ * point instead of the 40 to 50 of the JSON. Layout, all counts and lengths as varints:
+ * <pre>
+ * format byte, route count
+ * per route: point count, lat and lon deltas of every point
+ *            bound count, bounds as 8 byte doubles
+ *            summary count, per entry the key and the value as a 4 byte float
+ *            instruction count, instructions
+ * strings as UTF-8 byte count and bytes
+ * </pre>
+ */
+public class RouteDeltaConverter extends AbstractGenericHttpMessageConverter<List<RoutePath>> {
+	public static final String MEDIA_TYPE = "application/x-route-delta";
+	public static final int FORMAT = 1;
+	public static final double MULTIPLIER = 1e6;
+
+	public RouteDeltaConverter() {
+		super(MediaType.valueOf(MEDIA_TYPE));
+	}
+
+	@Override
+	public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+		return isRouteList(type, true) && canRead(mediaType);
+	}
+
+	@Override
+	public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+		return isRouteList(type == null ? clazz : type, false) && canWrite(mediaType);
+	}
+
+	// without the element type a list is not known to hold routes
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return false;
+	}
+
+	// the list type is generic, only lists of routes are converted
+	private static boolean isRouteList(Type type, boolean read) {
+		if (!(type instanceof ParameterizedType))
+			return false;
+		ParameterizedType listType = (ParameterizedType) type;
+		if (!(listType.getRawType() instanceof Class) || listType.getActualTypeArguments()[0] != RoutePath.class)
+			return false;
+		Class<?> raw = (Class<?>) listType.getRawType();
+		return read ? raw.isAssignableFrom(ArrayList.class) : List.class.isAssignableFrom(raw);
+	}
+
+	@Override
+	protected void writeInternal(List<RoutePath> routes, Type type, HttpOutputMessage outputMessage) throws IOException {
+		byte[] bytes = encode(routes);
+		outputMessage.getHeaders().setContentLength(bytes.length);
+		outputMessage.getBody().write(bytes);
+	}
+
+	@Override
+	public List<RoutePath> read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+		return readInternal(null, inputMessage);
+	}
+
+	@Override
+	protected List<RoutePath> readInternal(Class<? extends List<RoutePath>> clazz, HttpInputMessage inputMessage) throws IOException {
+		byte[] bytes = inputMessage.getBody().readAllBytes();
+		try {
+			return decode(bytes);
+		} catch (IllegalArgumentException e) {
+			throw new HttpMessageNotReadableException(e.getMessage(), e, inputMessage);
+		}
+	}
+
+	public static byte[] encode(List<RoutePath> routes) {
+		Writer out = new Writer();
+		out.writeByte(FORMAT);
+		out.writeVarint(routes.size());
+		for (RoutePath route : routes) {
+			PointList points = route.getPoints();
+			out.writeVarint(points.size());
+			long lat = 0;
+			long lon = 0;
+			for (int i = 0; i < points.size(); i++) {
+				long nextLat = Math.round(points.getLat(i) * MULTIPLIER);
+				long nextLon = Math.round(points.getLon(i) * MULTIPLIER);
+				out.writeZigzag(nextLat - lat);
+				out.writeZigzag(nextLon - lon);
+				lat = nextLat;
+				lon = nextLon;
+			}
+			List<Double> bounds = route.getBounds();
+			out.writeVarint(bounds.size());
+			for (double bound : bounds) {
+				out.writeLong(Double.doubleToLongBits(bound));
+			}
+			Map<String, Float> summary = route.getSummary() == null ? Map.of() : route.getSummary();
+			out.writeVarint(summary.size());
+			for (Map.Entry<String, Float> entry : summary.entrySet()) {
+				out.writeString(entry.getKey());
+				out.writeInt(Float.floatToIntBits(entry.getValue()));
+			}
+			List<String> instructions = route.getNavigationInstruction() == null ? List.of() : route.getNavigationInstruction();
+			out.writeVarint(instructions.size());
+			for (String instruction : instructions) {
+				out.writeString(instruction);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * The routes of an encoded response, the points rounded to 10^-6 degrees.
+	 */
+	public static List<RoutePath> decode(byte[] bytes) {
+		Reader in = new Reader(bytes);
+		int format = in.readByte();
+		if (format != FORMAT)
+			throw new IllegalArgumentException("Unknown route format " + format + ", expected " + FORMAT);
+		int routeCount = in.readCount();
+		List<RoutePath> routes = new ArrayList<>(routeCount);
+		for (int r = 0; r < routeCount; r++) {
+			RoutePath route = new RoutePath();
+			int pointCount = in.readCount();
+			PointList points = new PointList(pointCount, false);
+			long lat = 0;
+			long lon = 0;
+			for (int i = 0; i < pointCount; i++) {
+				lat += in.readZigzag();
+				lon += in.readZigzag();
+				points.add(lat / MULTIPLIER, lon / MULTIPLIER);
+			}
+			route.setPoints(points);
+			int boundCount = in.readCount();
+			for (int i = 0; i < boundCount; i++) {
+				route.getBounds().add(Double.longBitsToDouble(in.readLong()));
+			}
+			int summaryCount = in.readCount();
+			HashMap<String, Float> summary = new HashMap<>();
+			for (int i = 0; i < summaryCount; i++) {
+				String key = in.readString();
+				summary.put(key, Float.intBitsToFloat(in.readInt()));
+			}
+			route.setSummary(summary);
+			int instructionCount = in.readCount();
+			ArrayList<String> instructions = new ArrayList<>(instructionCount);
+			for (int i = 0; i < instructionCount; i++) {
+				instructions.add(in.readString());
+			}
+			route.setNavigationInstruction(instructions);
+			routes.add(route);
+		}
+		if (in.pos != bytes.length)
+			throw new IllegalArgumentException((bytes.length - in.pos) + " bytes after the last route");
+		return routes;
+	}
+
+	private static class Writer {
+		private byte[] buf = new byte[256];
+		private int size;
+
+		void writeByte(int b) {
+			if (size == buf.length)
+				buf = Arrays.copyOf(buf, buf.length * 2);
+			buf[size++] = (byte) b;
+		}
+
+		void writeVarint(long value) {
+			while ((value & ~0x7FL) != 0) {
+				writeByte((int) (value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			writeByte((int) value);
+		}
+
+		void writeZigzag(long value) {
+			writeVarint((value << 1) ^ (value >> 63));
+		}
+
+		void writeInt(int value) {
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				writeByte(value >>> shift);
+			}
+		}
+
+		void writeLong(long value) {
+			writeInt((int) (value >>> 32));
+			writeInt((int) value);
+		}
+
+		void writeString(String s) {
+			byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+			writeVarint(utf8.length);
+			for (byte b : utf8) {
+				writeByte(b);
+			}
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(buf, size);
+		}
+	}
+
+	private static class Reader {
+		private final byte[] buf;
+		private int pos;
+
+		Reader(byte[] buf) {
+			this.buf = buf;
+		}
+
+		int readByte() {
+			if (pos == buf.length)
+				throw new IllegalArgumentException("Route data ends after " + pos + " bytes");
+			return buf[pos++] & 0xFF;
+		}
+
+		long readVarint() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+			}
+			throw new IllegalArgumentException("Varint longer than 10 bytes at " + pos);
+		}
+
+		// a count is at most the bytes that are left, every entry takes at least one
+		int readCount() {
+			long count = readVarint();
+			if (count < 0 || count > buf.length - pos)
+				throw new IllegalArgumentException("Count " + count + " at " + pos + " exceeds the route data");
+			return (int) count;
+		}
+
+		long readZigzag() {
+			long value = readVarint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		int readInt() {
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				value = (value << 8) | readByte();
+			}
+			return value;
+		}
+
+		long readLong() {
+			return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+		}
+
+		String readString() {
+			int length = readCount();
+			String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+			pos += length;
+			return s;
+		}
+	}
+}
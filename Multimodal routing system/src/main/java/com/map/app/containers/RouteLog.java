@@ -0,0 +1,243 @@
+package com.map.app.containers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends one csv row per calculated route to results_&lt;time factor&gt;_&lt;pollution factor&gt;.csv
+ * in the output directory. Request threads only add the row to a bounded lock-free queue,
+ * a single writer thread collects the rows in buffers and writes them in batches. The
+ * buffers are written at least every flush interval and a file is renamed with a time
+ * stamp and started again once it reaches the maximum size. Rows are dropped (counted
+ * and printed by the writer) while the queue is full, routing never waits for the disk.
+ */
+public class RouteLog implements Closeable {
+	public static final String HEADER = "sno,origin_lat,origin_lon,destination_lat,destination_lon,routing,distance,time,"
+			+ "concentration,exposure,default_smoke,default_time,u_turn_costs,time_factor,pollution_factor,algorithm,curbside,timestamp";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// wake the writer up before the flush interval once this many rows are waiting
+	private static final int BATCH_SIZE = 256;
+
+	private final Path dir;
+	private final int capacity;
+	private final long flushNanos;
+	private final long maxBytes;
+	private final ConcurrentLinkedQueue<Row> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicLong sno = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	// only used by the writer thread
+	private final Map<String, LogFile> files = new HashMap<>();
+	private final Thread writer;
+	private volatile boolean closed;
+
+	private static class Row {
+		final String file;
+		final String line;
+
+		Row(String file, String line) {
+			this.file = file;
+			this.line = line;
+		}
+	}
+
+	public RouteLog(String dir, int capacity, long flushMillis, long maxBytes) {
+		this.dir = Paths.get(dir);
+		this.capacity = capacity;
+		this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+		this.maxBytes = maxBytes;
+		this.writer = new Thread(this::run, "route-log");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(this::close, "route-log-close"));
+	}
+
+	/**
+	 * Next serial number of a route.
+	 */
+	public long nextSno() {
+		return sno.incrementAndGet();
+	}
+
+	/**
+	 * Queues a row for results_&lt;timeFactor&gt;_&lt;pollutionFactor&gt;.csv, returns false if the queue is full.
+	 */
+	public boolean log(String timeFactor, String pollutionFactor, String row) {
+		if (closed || queued.incrementAndGet() > capacity) {
+			queued.decrementAndGet();
+			dropped.incrementAndGet();
+			return false;
+		}
+		queue.offer(new Row("results_" + timeFactor + "_" + pollutionFactor + ".csv", row));
+		if (queued.get() == BATCH_SIZE)
+			LockSupport.unpark(writer);
+		return true;
+	}
+
+	/**
+	 * Rows dropped because the queue was full, the writer prints the new ones at every flush.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Writes the queued rows and stops the writer thread.
+	 */
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join(TimeUnit.NANOSECONDS.toMillis(flushNanos) + 5000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		long lastFlush = System.nanoTime();
+		long reportedDropped = 0;
+		while (true) {
+			// read closed before draining, rows queued before close are always written
+			boolean last = closed;
+			Row row;
+			while ((row = queue.poll()) != null) {
+				queued.decrementAndGet();
+				write(row);
+			}
+			if (last || System.nanoTime() - lastFlush >= flushNanos) {
+				flush();
+				lastFlush = System.nanoTime();
+				long dropped = getDropped();
+				if (dropped > reportedDropped) {
+					System.out.println("Route log queue full, dropped " + (dropped - reportedDropped) + " rows (" + dropped + " in total)");
+					reportedDropped = dropped;
+				}
+			}
+			if (last) {
+				for (LogFile file : files.values()) {
+					file.close();
+				}
+				return;
+			}
+			LockSupport.parkNanos(this, flushNanos);
+		}
+	}
+
+	private void write(Row row) {
+		try {
+			LogFile file = files.get(row.file);
+			if (file == null) {
+				file = new LogFile(dir.resolve(row.file));
+				files.put(row.file, file);
+			}
+			file.write(row.line);
+		} catch (IOException | RuntimeException e) {
+			// one bad row or file must not stop the writer thread
+			e.printStackTrace();
+		}
+	}
+
+	private void flush() {
+		for (LogFile file : files.values()) {
+			try {
+				file.flush();
+			} catch (IOException | RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private class LogFile {
+		private final Path path;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private FileChannel channel;
+		private long size;
+
+		LogFile(Path path) throws IOException {
+			this.path = path;
+			open();
+		}
+
+		private void open() throws IOException {
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			size = channel.size();
+			if (size == 0)
+				write(HEADER);
+		}
+
+		void write(String line) throws IOException {
+			byte[] bytes = (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+			if (buffer.remaining() < bytes.length)
+				flush();
+			if (bytes.length > buffer.capacity())
+				writeFully(ByteBuffer.wrap(bytes));
+			else
+				buffer.put(bytes);
+			size += bytes.length;
+			if (size >= maxBytes)
+				rotate();
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			try {
+				writeFully(buffer);
+			} finally {
+				// the rows of a failed write are lost, the next ones are written to an empty buffer
+				buffer.clear();
+			}
+		}
+
+		private void writeFully(ByteBuffer bytes) throws IOException {
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+		}
+
+		private void rotate() throws IOException {
+			flush();
+			channel.close();
+			String name = path.getFileName().toString();
+			String prefix = name.substring(0, name.length() - ".csv".length()) + "_" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+			Path rotated = path.resolveSibling(prefix + ".csv");
+			for (int i = 1; Files.exists(rotated); i++) {
+				rotated = path.resolveSibling(prefix + "_" + i + ".csv");
+			}
+			try {
+				Files.move(path, rotated);
+			} finally {
+				// appends to the old file if it could not be renamed
+				open();
+			}
+		}
+
+		void close() {
+			try {
+				flush();
+				channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -1,28 +1,54 @@
 package com.map.app.containers;
 
-import java.io.BufferedWriter;
-import java.io.FileInputStream;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
+import com.graphhopper.config.Profile;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.ResponsePath;
-import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.FetchMode;
 import com.graphhopper.util.Instruction;
 import com.graphhopper.util.InstructionList;
 import com.graphhopper.util.Parameters;
+import com.graphhopper.util.PMap;
 import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.GHPoint;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
 import com.map.app.model.UrlContainer;
-import com.map.app.graphhopperfuncs.ScoreCalculator;
+import com.map.app.graphhopperfuncs.EdgeDataSnapshot;
+import com.map.app.graphhopperfuncs.EdgeDataStore;
+import com.map.app.graphhopperfuncs.IsochroneRouter;
+import com.map.app.graphhopperfuncs.MatrixRouter;
+import com.map.app.graphhopperfuncs.ParetoRouter;
+import com.map.app.graphhopperfuncs.RouteMetrics;
+import com.map.app.model.ExposureMatrix;
+import com.map.app.model.Isochrone;
+import com.map.app.model.IsochroneContainer;
+import com.map.app.model.MatrixContainer;
+import com.map.app.model.RouteCacheStats;
 import com.map.app.model.RoutePath;
 import com.map.app.service.PathChoice;
+import com.map.app.service.RoutingConfig;
+import com.map.app.service.RoutingConfigStore;
 import com.map.app.service.TrafficAndRoutingService;
 import com.map.app.service.TransportMode;
 
@@ -31,7 +57,16 @@ import com.map.app.service.TransportMode;
  */
 public class RoutePathContainer {
     private final GraphHopper gh;
-    private final Lock readLock;
+    private final EdgeDataStore edgeDataStore;
+    private final RoutingConfigStore configStore;
+    // null if no output_results directory is configured
+    private final RouteLog routeLog;
+    // calculates the routes of all path choices of a request in parallel
+    private final ExecutorService routeExecutor;
+    // reuses the search arrays of finished isochrones
+    private final IsochroneRouter isochroneRouter;
+    // null if route_cache_size is 0
+    private final RouteCache routeCache;
     private Double getTimeFactor;
 
     public void setGetPollutionFactor(Double getPollutionFactor) {
@@ -59,74 +94,138 @@ public class RoutePathContainer {
         return 1.0; // Example default value
     }
 
-
-    int c = 0;
-
-    public RoutePathContainer(GraphHopper hopper, Lock readLock) {
+    public RoutePathContainer(GraphHopper hopper, EdgeDataStore edgeDataStore, RoutingConfigStore configStore, RouteLog routeLog) {
         this.gh = hopper;
-        this.readLock = readLock;
+        this.edgeDataStore = edgeDataStore;
+        this.configStore = configStore;
+        this.routeLog = routeLog;
+        int threads = configStore.getCurrent().getRouteThreads();
+        AtomicInteger threadCount = new AtomicInteger();
+        // bounded, a full queue runs the route on the request thread
+        this.routeExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(4 * threads), r -> {
+            Thread thread = new Thread(r, "route-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.isochroneRouter = new IsochroneRouter(hopper, threads);
+        int cacheSize = configStore.getCurrent().getRouteCacheSize();
+        this.routeCache = cacheSize > 0 ? new RouteCache(cacheSize) : null;
     }
 
     public RoutePath finalPath(UrlContainer p, String routing, TransportMode mode) {
-        Properties prop = new Properties();
-        int getUTurnCosts, defaultSmoke, defaultTime;
-        double sumFactors;
-        boolean curbside, getPassThrough;
-        String Algorithm = Parameters.Algorithms.ASTAR_BI;
+        return finalPath(p, routing, mode, edgeDataStore.getCurrent());
+    }
 
-        try (FileInputStream ip = new FileInputStream("config.properties")) {
-            prop.load(ip);
-            defaultSmoke = Integer.parseInt(prop.getProperty("default_smoke"));
-            getPassThrough = Boolean.parseBoolean(prop.getProperty("pass_through"));
-            getUTurnCosts = Integer.parseInt(prop.getProperty("u_turn_costs"));
-//			getTimeFactor = Double.parseDouble(prop.getProperty("balanced_time_factor"));
-//			getPollutionFactor = Double.parseDouble(prop.getProperty("balanced_pollution_factor"));
-            defaultTime = Integer.parseInt(prop.getProperty("default_time"));
-            curbside = Boolean.parseBoolean(prop.getProperty("curbside"));
-//
-        } catch (IOException e) {
-            throw new RuntimeException("Config properties are not found. Aborting ...");
+    public RoutePath finalPath(UrlContainer p, String routing, TransportMode mode, EdgeDataSnapshot snapshot) {
+        RoutingConfig config = configStore.getCurrent();
+        RouteCache.Key requestKey = null, snappedKey = null;
+        if (routeCache != null) {
+            // the same coordinates are found without snapping them
+            requestKey = new RouteCache.Key(routing, snapshot.getVersion(), config, p.getStartlat(), p.getStartlon(), p.getEndlat(), p.getEndlon());
+            RoutePath cached = routeCache.getRequest(requestKey);
+            if (cached == null) {
+                snappedKey = routeKey(p, routing, snapshot, config);
+                cached = routeCache.getSnapped(requestKey, snappedKey);
+            }
+            if (cached != null) {
+                HashMap<String, Float> summary = cached.getSummary();
+                logRoute(List.of(new GHPoint(p.getStartlat(), p.getStartlon()), new GHPoint(p.getEndlat(), p.getEndlon())), routing,
+                        summary.get("distance"), summary.get("time"), summary.get("concentration"), summary.get("exposure"),
+                        Parameters.Algorithms.ASTAR_BI, config);
+                return cachedCopy(cached);
+            }
         }
+        int getUTurnCosts = config.getUTurnCosts();
+        double sumFactors;
+        boolean curbside = config.isCurbside(), getPassThrough = config.isPassThrough();
+        String Algorithm = Parameters.Algorithms.ASTAR_BI;
 
-        RoutePath routePath = new RoutePath();
 //        sumFactors = getTimeFactor + getPollutionFactor;
 //        getPollutionFactor = 1 - getTimeFactor;
 //        getTimeFactor = getTimeFactor / sumFactors;
 
-        initializeResultsCSV("output_results", String.valueOf(getTimeFactor), String.valueOf(getPollutionFactor));
         List<String> CURBSIDES = Stream.generate(() -> "left").limit(2).collect(Collectors.toList());
         // set routing algorithm
         GHRequest ghRequest = new GHRequest(p.getStartlat(), p.getStartlon(), p.getEndlat(), p.getEndlon())
                 .setProfile(routing)
+                // CH needs fixed weights, MyGraphHopper uses the landmarks of the snapshot version if they are prepared
                 .putHint(Parameters.CH.DISABLE, true)
-                .putHint(Parameters.Routing.U_TURN_COSTS, getUTurnCosts)
                 .putHint(Parameters.Routing.PASS_THROUGH, getPassThrough)
+                .putHint(EdgeDataStore.SNAPSHOT_HINT, snapshot)
                 .setPathDetails(List.of(Parameters.Details.EDGE_ID));
+        // finite u-turn costs are rejected for profiles without turn costs (foot)
+        Profile profile = gh.getProfile(routing);
+        if (profile != null && profile.isTurnCosts()) {
+            ghRequest.putHint(Parameters.Routing.U_TURN_COSTS, getUTurnCosts);
+        }
         // always false for foot mode
         if (curbside & !mode.toString().equals("foot")) {
             ghRequest.setCurbsides(CURBSIDES).putHint(Parameters.Routing.FORCE_CURBSIDE, false);
         }
         ghRequest.setAlgorithm(Algorithm);
+        GHResponse fullRes = gh.route(ghRequest);
+        if (fullRes.hasErrors()) {
+            throw new RuntimeException(fullRes.getErrors().toString());
+        }
+        long visitedNodes = fullRes.getHints().getLong("visited_nodes.sum", 0);
+        RoutePath routePath = toRoutePath(fullRes.getBest(), ghRequest.getPoints(), routing, mode, Algorithm, visitedNodes, snapshot, config);
+        if (routeCache != null)
+            routeCache.put(requestKey, snappedKey, routePath);
+        return routePath;
+    }
+
+    // the points snapped like the router snaps them for the profile, null if one is not found and the router reports it
+    private RouteCache.Key routeKey(UrlContainer p, String routing, EdgeDataSnapshot snapshot, RoutingConfig config) {
+        Profile profile = gh.getProfile(routing);
+        if (profile == null)
+            return null;
+        Weighting weighting = gh.createWeighting(profile, new PMap().putObject(EdgeDataStore.SNAPSHOT_HINT, snapshot));
+        EdgeFilter snapFilter = new DefaultSnapFilter(weighting, gh.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(routing)));
+        Snap from = gh.getLocationIndex().findClosest(p.getStartlat(), p.getStartlon(), snapFilter);
+        Snap to = gh.getLocationIndex().findClosest(p.getEndlat(), p.getEndlon(), snapFilter);
+        if (!from.isValid() || !to.isValid())
+            return null;
+        return new RouteCache.Key(routing, snapshot.getVersion(), config, from, to);
+    }
+
+    /**
+     * The counters of the route cache, null if it is off.
+     */
+    public RouteCacheStats getRouteCacheStats() {
+        return routeCache == null ? null : routeCache.getStats();
+    }
+
+    // scores a calculated route and adds it to the route log
+    // the points and instructions are shared, the summary is copied, a cached route has not searched any node
+    private static RoutePath cachedCopy(RoutePath cached) {
+        RoutePath copy = new RoutePath();
+        copy.setPoints(cached.getPoints());
+        copy.setNavigationInstruction(cached.getNavigationInstruction());
+        copy.setBounds(cached.getBounds());
+        HashMap<String, Float> summary = new HashMap<>(cached.getSummary());
+        summary.computeIfPresent("visited_nodes", (key, value) -> 0f);
+        copy.setSummary(summary);
+        return copy;
+    }
+
+    private RoutePath toRoutePath(ResponsePath res, List<GHPoint> points, String routing, TransportMode mode, String Algorithm, long visitedNodes,
+                                  EdgeDataSnapshot snapshot, RoutingConfig config) {
+        RoutePath routePath = new RoutePath();
         PointList pl = new PointList();
         HashMap<String, Float> map = new HashMap<>();
         ArrayList<String> ins = new ArrayList<>();
 
         try {
-            GHResponse fullRes = gh.route(ghRequest);
-            if (fullRes.hasErrors()) {
-                throw new RuntimeException(fullRes.getErrors().toString());
-            }
-            ResponsePath res = fullRes.getBest();
-            FlagEncoder encoder = gh.getEncodingManager().getEncoder(mode.toString());
-            ScoreCalculator scoreCalculator = new ScoreCalculator(encoder);
+            // all scores in one pass over the route edges
+            RouteMetrics metrics = RouteMetrics.of(res, snapshot, mode);
             // to get distance in km (upto 2 decimal places)
-            double distanceScore = (double) (Math.round(res.getDistance() / 10)) / 100;
-            double concScore = ScoreCalculator.calcConcentrationScore(gh, res.getPathDetails().get(Parameters.Details.EDGE_ID), mode);
-            double exposureScore = ScoreCalculator.calcExposureScore(gh, res.getPathDetails().get(Parameters.Details.EDGE_ID), mode);
-            // exposure upto 2 decimal places
-            exposureScore = (double) Math.round(exposureScore * 100) / 100;
+            double distanceScore = (double) (Math.round(metrics.getDistance() / 10)) / 100;
+            double concScore = metrics.getConcentration();
+            // exposure and dose upto 2 decimal places
+            double exposureScore = (double) Math.round(metrics.getExposure() * 100) / 100;
+            double doseScore = (double) Math.round(metrics.getInhaledDose() * 100) / 100;
             double timeScore;
-            timeScore = (double) (Math.round((double) ((res.getTime() * 100 / 60) / 1000))) / 100;
+            timeScore = (double) (Math.round((double) ((metrics.getTime() * 100 / 60) / 1000))) / 100;
             // in metres
             map.put("distance", (float) distanceScore);
             // in minutes
@@ -135,6 +234,12 @@ public class RoutePathContainer {
             map.put("concentration", (float) concScore);
             // micro gm s / m^3
             map.put("exposure", (float) exposureScore);
+            // micro gm / m^3, weighted by the travel time of the edges
+            map.put("mean_concentration", (float) metrics.getMeanConcentration());
+            // exposure times the inhalation rate of the mode
+            map.put("dose", (float) doseScore);
+            // nodes explored by the search, to compare algorithms and heuristics
+            map.put("visited_nodes", (float) visitedNodes);
             InstructionList list = res.getInstructions();
             for (Instruction ele : list) {
                 if (ele.getSign() != 4) {
@@ -150,195 +255,218 @@ public class RoutePathContainer {
             ins.add("TIME [min]: " + timeScore);
             ins.add("CONCENTRATION [micro gm / m^3]: " + concScore);
             ins.add("EXPOSURE (10^3) [micro gm sec/ m^3 ]: " + exposureScore);
-            String origin_lat = String.valueOf(ghRequest.getPoints().get(0).lat);
-            String origin_lon = String.valueOf(ghRequest.getPoints().get(0).lon);
-            String destination_lat = String.valueOf(ghRequest.getPoints().get(ghRequest.getPoints().size() - 1).lat);
-            String destination_lon = String.valueOf(ghRequest.getPoints().get(ghRequest.getPoints().size() - 1).lon);
-            String timeStamp = new SimpleDateFormat("dd/MM/yyyyHH:mm:ss").format(Calendar.getInstance().getTime());
-            // writeResults(
-            //         "output_results",
-            //         c,
-            //         origin_lat,
-            //         origin_lon,
-            //         destination_lat,
-            //         destination_lon,
-            //         routing.split("_")[0],
-            //         distanceScore,
-            //         timeScore,
-            //         concScore,
-            //         exposureScore,
-            //         defaultSmoke,
-            //         defaultTime,
-            //         getUTurnCosts,
-            //         getTimeFactor,
-            //         getPollutionFactor,
-            //         Algorithm,
-            //         curbside,
-            //         timeStamp
-            // );
+            logRoute(points, routing, distanceScore, timeScore, concScore, exposureScore, Algorithm, config);
             pl = res.getPoints();
         } finally {
             routePath.fillPath(pl, ins);
             routePath.setSummary(map);
         }
-        c++;
         return routePath;
     }
 
+    // adds a row to the route log, if there is one
+    private void logRoute(List<GHPoint> points, String routing, double distanceScore, double timeScore, double concScore, double exposureScore,
+                          String Algorithm, RoutingConfig config) {
+        if (routeLog == null)
+            return;
+        String origin_lat = String.valueOf(points.get(0).lat);
+        String origin_lon = String.valueOf(points.get(0).lon);
+        String destination_lat = String.valueOf(points.get(points.size() - 1).lat);
+        String destination_lon = String.valueOf(points.get(points.size() - 1).lon);
+        String timeStamp = new SimpleDateFormat("dd/MM/yyyyHH:mm:ss").format(Calendar.getInstance().getTime());
+        // written by the route log thread, the request does not wait for the disk
+        StringJoiner row = new StringJoiner(",");
+        row
+                .add(String.valueOf(routeLog.nextSno()))
+                .add(origin_lat)
+                .add(origin_lon)
+                .add(destination_lat)
+                .add(destination_lon)
+                .add(routing.split("_")[0])
+                .add(String.valueOf(distanceScore))
+                .add(String.valueOf(timeScore))
+                .add(String.valueOf(concScore))
+                .add(String.valueOf(exposureScore))
+                .add(String.valueOf((double) config.getDefaultSmoke()))
+                .add(String.valueOf((double) config.getDefaultTime()))
+                .add(String.valueOf((double) config.getUTurnCosts()))
+                .add(String.valueOf(getTimeFactor))
+                .add(String.valueOf(getPollutionFactor))
+                .add(Algorithm)
+                .add(String.valueOf(config.isCurbside()))
+                .add(timeStamp);
+        routeLog.log(String.valueOf(getTimeFactor), String.valueOf(getPollutionFactor), row.toString());
+    }
+
     public ArrayList<RoutePath> find(UrlContainer p) {
         //routing result for given route information
-        this.readLock.lock();
         ArrayList<RoutePath> result = new ArrayList<>();
-        try {
-            //fetching the profile to do routing with
-            String profile = "";
-            TransportMode mode = TransportMode.valueOf("car");
-            PathChoice pathChoice;
-            switch (p.getVehicle()) {
-                case "bus":
-                    profile = "bus";
-                    break;
-                case "ipt":
-                    profile = "ipt";
-                    break;
-                case "metro":
-                    profile = "metro";
-                    break;
-                default:
-                    mode = TransportMode.valueOf(p.getVehicle());
-                    pathChoice = PathChoice.valueOf(p.getRouteType());
-                    if (!pathChoice.toString().equals("all"))
-                        profile = TrafficAndRoutingService.getModeBasedPathChoice(pathChoice, mode);
-                    break;
-            }
+        // all routes of this request use the same edge data version, a refresh does not block them
+        EdgeDataSnapshot snapshot = edgeDataStore.getCurrent();
+        //fetching the profile to do routing with
+        String profile = "";
+        TransportMode mode = TransportMode.valueOf("car");
+        PathChoice pathChoice;
+        switch (p.getVehicle()) {
+            case "bus":
+                profile = "bus";
+                break;
+            case "ipt":
+                profile = "ipt";
+                break;
+            case "metro":
+                profile = "metro";
+                break;
+            default:
+                mode = TransportMode.valueOf(p.getVehicle());
+                pathChoice = PathChoice.valueOf(p.getRouteType());
+                if (pathChoice == PathChoice.pareto)
+                    return paretoPaths(p, mode, snapshot);
+                if (!pathChoice.toString().equals("all"))
+                    profile = TrafficAndRoutingService.getModeBasedPathChoice(pathChoice, mode);
+                break;
+        }
 
-            if (profile.length() != 0) {
-                result.add(finalPath(p, profile, mode));
-            } else {
-                for (PathChoice pc : PathChoice.values()) {
+        if (profile.length() != 0) {
+            result.add(finalPath(p, profile, mode, snapshot));
+        } else {
+            // the path choices are routed in parallel, the request waits for the slowest one
+            List<Future<RoutePath>> routes = new ArrayList<>();
+            for (PathChoice pc : PathChoice.values()) {
 
-                    if (!pc.toString().equals("all")) {
-                        profile = TrafficAndRoutingService.getModeBasedPathChoice(pc, mode);
-                        result.add(finalPath(p, profile, mode));
-                    }
+                if (!pc.toString().equals("all") && pc != PathChoice.pareto) {
+                    String choiceProfile = TrafficAndRoutingService.getModeBasedPathChoice(pc, mode);
+                    TransportMode choiceMode = mode;
+                    routes.add(routeExecutor.submit(() -> finalPath(p, choiceProfile, choiceMode, snapshot)));
+                }
+            }
+            try {
+                for (Future<RoutePath> route : routes) {
+                    result.add(getRoute(route));
+                }
+            } finally {
+                for (Future<RoutePath> route : routes) {
+                    route.cancel(true);
                 }
             }
-        } finally {
-            readLock.unlock();
         }
         return result; //result contains latitudes and longitudes of route and instructions for navigation
     }
 
-    public static void initializeResultsCSV(String config_file, String timeF, String pollutionF) {
-        FileWriter csvwriter;
-        BufferedWriter bufferedWriter = null;
+    /**
+     * The routes between the fastest and the greenest one that are not both slower and more exposed
+     * than another route, found with one bicriteria search.
+     */
+    public ArrayList<RoutePath> paretoPaths(UrlContainer p, TransportMode mode, EdgeDataSnapshot snapshot) {
+        RoutingConfig config = configStore.getCurrent();
+        PMap hints = new PMap()
+                .putObject(Parameters.Routing.U_TURN_COSTS, config.getUTurnCosts())
+                .putObject(EdgeDataStore.SNAPSHOT_HINT, snapshot);
+        List<GHPoint> points = List.of(new GHPoint(p.getStartlat(), p.getStartlon()), new GHPoint(p.getEndlat(), p.getEndlon()));
+        ParetoRouter router = new ParetoRouter(gh, config.getParetoEpsilon(), config.getParetoMaxLabels());
+        List<ResponsePath> paths = router.route(points.get(0), points.get(1), TrafficAndRoutingService.getModeBasedPathChoice(PathChoice.fastest, mode),
+                TrafficAndRoutingService.getModeBasedPathChoice(PathChoice.greenest, mode), hints, config.getParetoMaxRoutes());
+        ArrayList<RoutePath> result = new ArrayList<>();
+        for (ResponsePath res : paths) {
+            result.add(toRoutePath(res, points, TrafficAndRoutingService.getModeBasedPathChoice(PathChoice.pareto, mode), mode, "pareto",
+                    router.getVisitedNodes(), snapshot, config));
+        }
+        return result;
+    }
+
+    private static RoutePath getRoute(Future<RoutePath> route) {
         try {
-            Properties prop = new Properties();
-            String outputDir;
+            return route.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
-            try (FileInputStream ip = new FileInputStream("config.properties")) {
-                prop.load(ip);
-                outputDir = prop.getProperty(config_file);
-//					timeF = Double.parseDouble(prop.getProperty("balanced_time_factor"));
-//					pollutionF = Double.parseDouble(prop.getProperty("balanced_pollution_factor"));
-            } catch (IOException e) {
-                throw new RuntimeException("Config properties are not found. Aborting ...");
-            }
+    /**
+     * Time, distance, concentration and exposure between all sources and targets, computed with one
+     * search per source on the edge data version of the request.
+     */
+    public ExposureMatrix matrix(MatrixContainer m) {
+        RoutingConfig config = configStore.getCurrent();
+        int locations = m.getSources().size() + m.getTargets().size();
+        if (locations > config.getMatrixMaxLocations())
+            throw new IllegalArgumentException("Too many locations " + locations + ", the maximum is " + config.getMatrixMaxLocations());
+        String profile;
+        TransportMode mode = TransportMode.valueOf("car");
+        switch (m.getVehicle()) {
+            case "bus":
+            case "ipt":
+            case "metro":
+                profile = m.getVehicle();
+                break;
+            default:
+                mode = TransportMode.valueOf(m.getVehicle());
+                PathChoice pathChoice = PathChoice.valueOf(m.getRouteType());
+                if (pathChoice == PathChoice.all || pathChoice == PathChoice.pareto)
+                    throw new IllegalArgumentException("The matrix needs a single route type, not " + pathChoice);
+                profile = TrafficAndRoutingService.getModeBasedPathChoice(pathChoice, mode);
+                break;
+        }
+        PMap hints = new PMap().putObject(EdgeDataStore.SNAPSHOT_HINT, edgeDataStore.getCurrent());
+        MatrixRouter.Result res = new MatrixRouter(gh).route(m.getSources(), m.getTargets(), profile, mode, hints);
+        ExposureMatrix matrix = new ExposureMatrix();
+        // same units and rounding as the route summary
+        matrix.setDistances(round(res.getDistances(), 1000));
+        matrix.setTimes(round(res.getTimes(), 60 * 1000));
+        matrix.setConcentrations(round(res.getConcentrations(), 1));
+        matrix.setExposures(round(res.getExposures(), 1000));
+        matrix.setVisitedNodes(res.getVisitedNodes());
+        return matrix;
+    }
 
-            csvwriter = new FileWriter(outputDir + "results_" + timeF + "_" + pollutionF + ".csv", false);
-            bufferedWriter = new BufferedWriter(csvwriter);
-            StringJoiner stringJoiner = new StringJoiner(",");
-            stringJoiner
-                    .add("sno")
-                    .add("origin_lat")
-                    .add("origin_lon")
-                    .add("destination_lat")
-                    .add("destination_lon")
-                    .add("routing")
-                    .add("distance")
-                    .add("time")
-                    .add("concentration")
-                    .add("exposure")
-                    .add("default_smoke")
-                    .add("default_time")
-                    .add("u_turn_costs")
-                    .add("time_factor")
-                    .add("pollution_factor")
-                    .add("algorithm")
-                    .add("curbside")
-                    .add("timestamp");
-//						.add("request");
-            bufferedWriter.write(stringJoiner.toString());
-            bufferedWriter.newLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                assert bufferedWriter != null;
-                bufferedWriter.flush();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            try {
-                bufferedWriter.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+    /**
+     * The road segments that can be reached within the time and exposure limits, with the fastest
+     * profile of the vehicle and the edge data version of the request.
+     */
+    public Isochrone isochrone(IsochroneContainer c) {
+        RoutingConfig config = configStore.getCurrent();
+        if (!(c.getTimeLimit() > 0) || c.getTimeLimit() > config.getIsochroneMaxMinutes())
+            throw new IllegalArgumentException("The time limit has to be within (0, " + config.getIsochroneMaxMinutes() + "] minutes");
+        if (!(c.getExposureLimit() >= 0))
+            throw new IllegalArgumentException("The exposure limit must not be negative");
+        TransportMode mode = TransportMode.valueOf(c.getVehicle());
+        PMap hints = new PMap().putObject(EdgeDataStore.SNAPSHOT_HINT, edgeDataStore.getCurrent());
+        // minutes to ms, the exposure limit is a dose with the 10^3 scale of the route summary
+        IsochroneRouter.Result res = isochroneRouter.route(c.getLocation(), TrafficAndRoutingService.getModeBasedPathChoice(PathChoice.fastest, mode),
+                mode, hints, c.getTimeLimit() * 60 * 1000, c.getExposureLimit() * 1000);
+        Isochrone isochrone = new Isochrone();
+        List<Coordinate> coordinates = new ArrayList<>();
+        for (int edge : res.getEdges()) {
+            PointList pl = res.getGraph().getEdgeIteratorState(edge, Integer.MIN_VALUE).fetchWayGeometry(FetchMode.ALL);
+            ArrayList<GHPoint> points = new ArrayList<>();
+            for (int i = 0; i < pl.size(); i++) {
+                points.add(new GHPoint(pl.getLat(i), pl.getLon(i)));
+                coordinates.add(new Coordinate(pl.getLon(i), pl.getLat(i)));
             }
+            isochrone.getEdges().add(points);
+        }
+        Geometry hull = new GeometryFactory().createMultiPointFromCoords(coordinates.toArray(new Coordinate[0])).convexHull();
+        for (Coordinate coordinate : hull.getCoordinates()) {
+            isochrone.getPolygon().add(new GHPoint(coordinate.y, coordinate.x));
         }
+        isochrone.setVisitedNodes(res.getVisitedNodes());
+        return isochrone;
     }
 
-    public static void writeResults(String config_name, int sno, String origin_lat, String origin_lon, String destination_lat, String destination_lon, String routing, double dist, double time, double conc, double exposure, double defaultSmoke, double defaultTime, double uTurnCosts, double tFactor, double pFactor, String algorithm, Boolean curbside, String timeStamp) {
-        FileWriter csvwriter;
-        BufferedWriter bufferedWriter = null;
-        try {
-            Properties prop = new Properties();
-            String outputDir;
-            try (FileInputStream ip = new FileInputStream("config.properties")) {
-                prop.load(ip);
-                outputDir = prop.getProperty(config_name);
-            } catch (IOException e) {
-                throw new RuntimeException("Config properties are not found. Aborting ...");
-            }
-            csvwriter = new FileWriter(outputDir + "results_" + tFactor + "_" + pFactor + ".csv", true);
-            bufferedWriter = new BufferedWriter(csvwriter);
-            StringJoiner stringJoiner = new StringJoiner(",");
-            stringJoiner
-                    .add(String.valueOf(sno))
-                    .add(origin_lat)
-                    .add(origin_lon)
-                    .add(destination_lat)
-                    .add(destination_lon)
-                    .add(routing)
-                    .add(String.valueOf(dist))
-                    .add(String.valueOf(time))
-                    .add(String.valueOf(conc))
-                    .add(String.valueOf(exposure))
-                    .add(String.valueOf(defaultSmoke))
-                    .add(String.valueOf(defaultTime))
-                    .add(String.valueOf(uTurnCosts))
-                    .add(String.valueOf(tFactor))
-                    .add(String.valueOf(pFactor))
-                    .add(algorithm)
-                    .add(String.valueOf(curbside))
-                    .add(timeStamp);
-//					.add(request);
-            bufferedWriter.write(stringJoiner.toString());
-            bufferedWriter.newLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                assert bufferedWriter != null;
-                bufferedWriter.flush();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            try {
-                bufferedWriter.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+    private static Double[][] round(double[][] values, double unit) {
+        Double[][] rounded = new Double[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            rounded[i] = new Double[values[i].length];
+            for (int j = 0; j < values[i].length; j++) {
+                if (!Double.isNaN(values[i][j]))
+                    rounded[i][j] = (double) Math.round(values[i][j] * 100 / unit) / 100;
             }
         }
+        return rounded;
     }
-
-}
\ No newline at end of file
+}
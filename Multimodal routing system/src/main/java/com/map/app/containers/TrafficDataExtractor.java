@@ -1,43 +1,46 @@
 package com.map.app.containers;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.FileWriter;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
 import java.util.*;
-import java.util.concurrent.locks.Lock;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
-import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.util.shapes.BBox;
+import com.map.app.service.RoutingConfigStore;
 import com.map.app.service.TrafficAndRoutingService;
 import com.map.app.service.TransportMode;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.GraphHopper;
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
-import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.storage.Graph;
-import com.graphhopper.storage.index.LocationIndex;
-import com.graphhopper.storage.index.Snap;
-import com.graphhopper.util.EdgeIteratorState;
+import com.map.app.graphhopperfuncs.EdgeAnnotationEngine;
+import com.map.app.graphhopperfuncs.EdgeDataSnapshot;
+import com.map.app.graphhopperfuncs.EdgeDataStore;
+import com.map.app.graphhopperfuncs.SegmentEdgeCache;
 import com.map.app.model.TrafficData;
 
-import static com.map.app.containers.RoutePathContainer.initializeResultsCSV;
-import static com.map.app.containers.RoutePathContainer.writeResults;
-
 /**
  * @author Siftee, Amit
  */
 public class TrafficDataExtractor {
     private TrafficData dt = new TrafficData();
+    // the segments of the last feed by map tile
+    private final TrafficTiles tiles = new TrafficTiles();
 
-    private final Lock writeLock;
+    private final EdgeAnnotationEngine engine;
+    private final EdgeDataStore store;
+    private final SegmentEdgeCache segments;
+    private final HereTileFetcher fetcher;
+    private final RoutingConfigStore configStore;
+    // time of the last HERE speed of every edge, only the edges in liveEdges have one
+    private long[] updated;
+    private IntArrayList liveEdges = new IntArrayList();
+    // false until a feed computed the time of every edge
+    private boolean allTimes;
 
     public GraphHopper getHopper() {
         return hopper;
@@ -45,265 +48,183 @@ public class TrafficDataExtractor {
 
     private final GraphHopper hopper;
 
-    public TrafficDataExtractor(GraphHopper hopper, Lock lock) {
+    public TrafficDataExtractor(GraphHopper hopper, EdgeAnnotationEngine engine, EdgeDataStore store, SegmentEdgeCache segments, HereTileFetcher fetcher,
+                                RoutingConfigStore configStore) {
         this.hopper = hopper;
-        this.writeLock = lock;
+        this.engine = engine;
+        this.store = store;
+        this.segments = segments;
+        this.fetcher = fetcher;
+        this.configStore = configStore;
     }
 
     public void readHEREMapData(String apiKey, BBox boundingBox) {
-        // Updated to use HERE Traffic API v7 instead of v6
-        // HERE Traffic API v7 requires bounding box width and height to be at most 1 degree
-        
-        // Calculate dimensions of the bounding box
-        double width = boundingBox.maxLon - boundingBox.minLon;
-        double height = boundingBox.maxLat - boundingBox.minLat;
-        
-        // If the bounding box is within limits, make a single API call
-        if (width <= 1.0 && height <= 1.0) {
-            makeApiCallForBbox(apiKey, boundingBox.minLat, boundingBox.minLon, boundingBox.maxLat, boundingBox.maxLon);
-            return;
-        }
-        
-        // Otherwise, split the bounding box into smaller sections
-        // Calculate number of splits needed in each dimension
-        int lonSplits = (int) Math.ceil(width);
-        int latSplits = (int) Math.ceil(height);
-        
-        System.out.println("Splitting bounding box into " + lonSplits + "x" + latSplits + " sections");
-        
-        // Calculate step size for each dimension
-        double lonStep = width / lonSplits;
-        double latStep = height / latSplits;
-        
-        // Make API calls for each smaller section
-        for (int i = 0; i < lonSplits; i++) {
-            double minLon = boundingBox.minLon + (i * lonStep);
-            double maxLon = Math.min(minLon + lonStep, boundingBox.maxLon);
-            
-            for (int j = 0; j < latSplits; j++) {
-                double minLat = boundingBox.minLat + (j * latStep);
-                double maxLat = Math.min(minLat + latStep, boundingBox.maxLat);
-                
-                // Make API call for this section
-                makeApiCallForBbox(apiKey, minLat, minLon, maxLat, maxLon);
+        // the tiles are fetched and parsed at the same time, the edges are updated once for all of them
+        try {
+            TrafficData tempdt = fetcher.fetch(apiKey, boundingBox, TrafficAndRoutingService.functional_road_class_here_maps);
+            if (tempdt == null) {
+                System.out.println("No results found in traffic data");
+                return;
             }
+            feed(tempdt);
+        } finally {
+            System.out.println("Traffic parsing done...");
         }
     }
-    
-    private void makeApiCallForBbox(String apiKey, double minLat, double minLon, double maxLat, double maxLon) {
-        // HERE Traffic API v7 format: in=bbox:{westLongitude},{southLatitude},{eastLongitude},{northLatitude}
-        final String URL = "https://data.traffic.hereapi.com/v7/flow"
-                + "?apiKey=" + apiKey 
-                + "&in=bbox:" + minLon + "," + minLat + "," 
-                + maxLon + "," + maxLat
-                + "&locationReferencing=shape"
-                + "&return=shape,functional_class,speed"
-                + "&units=metric";
-        System.out.println("API Call: " + URL);
-        parseHEREMapJSON(URL);
-    }
 
     public void feed(TrafficData tempdt) {
-        writeLock.lock();
-        try {
-            lockedFeed(tempdt);
-        } finally {
-            writeLock.unlock();
+        // the edges of a segment are matched once, new shapes are matched in parallel before the
+        // feed takes the lock, a refresh of known shapes only looks them up
+        int[][] segmentEdges = segments.getEdges(tempdt.getLat(), tempdt.getLons());
+        segments.save();
+        synchronized (this) {
+            // routes keep using the previous version until the new speeds and times are published
+            float[][] speeds = new float[TransportMode.values().length][];
+            float[][] times = new float[TransportMode.values().length][];
+            stageFeed(tempdt, segmentEdges, speeds, times);
+            publishFeed(tempdt, speeds, times);
         }
     }
 
-    private void lockedFeed(TrafficData tempdt) {
-        this.dt = tempdt;
+    private void stageFeed(TrafficData tempdt, int[][] segmentEdges, float[][] speeds, float[][] times) {
         Graph graph = hopper.getGraphHopperStorage().getBaseGraph();
+        EdgeDataSnapshot snapshot = store.getCurrent();
+        long now = System.currentTimeMillis();
+        if (updated == null)
+            startTracking(snapshot, now);
+    
+        // the changed edges and the segment that sets their speed, -1 for an expired speed.
+        // The first segment of an edge wins, one bit per edge instead of boxing each edge id into a set
+        GHBitSet edgeIds = new GHBitSetImpl(graph.getEdges());
+        IntArrayList changedEdges = new IntArrayList();
+        IntArrayList changedSegments = new IntArrayList();
+        for (int i = 0; i < segmentEdges.length; i++) {
+            for (int edgeId : segmentEdges[i]) {
+                if (edgeIds.contains(edgeId)) continue;
+                edgeIds.add(edgeId);
+                changedEdges.add(edgeId);
+                changedSegments.add(i);
+                updated[edgeId] = now;
+            }
+        }
+        // HERE speeds that were not updated within the expiry go back to the speed of the graph
+        long expiryMillis = configStore.getCurrent().getTrafficExpiryMillis();
+        IntArrayList stillLive = new IntArrayList(changedEdges);
+        int expired = 0;
+        for (IntCursor edge : liveEdges) {
+            if (edgeIds.contains(edge.value))
+                continue;
+            if (expiryMillis > 0 && now - updated[edge.value] >= expiryMillis) {
+                changedEdges.add(edge.value);
+                changedSegments.add(-1);
+                updated[edge.value] = 0;
+                expired++;
+            } else {
+                stillLive.add(edge.value);
+            }
+        }
     
         for (TransportMode mode : TransportMode.values()) {
             FlagEncoder encoder = hopper.getEncodingManager().getEncoder(mode.toString());
             DecimalEncodedValue avgSpeedEnc = encoder.getAverageSpeedEnc();
-            LocationIndex locationIndex = hopper.getLocationIndex();
-    
-            Set<Integer> edgeIds = new HashSet<>();
-            for (int i = 0; i < dt.getLat().size(); i++) {
-                List<Float> entryLats = dt.getLat().get(i);
-                List<Float> entryLons = dt.getLons().get(i);
-                List<Float> entrySpeed = dt.getSpeed().get(i);
+            // start from the speeds of the previous tiles and refreshes, NaN means no speed from HERE
+            float[] speed = snapshot.copySpeeds(mode);
     
-                for (int j = 0; j < entryLats.size(); j++) {
-                    Float latitude = entryLats.get(j);
-                    Float longitude = entryLons.get(j);
-                    Snap qr = locationIndex.findClosest(latitude, longitude, EdgeFilter.ALL_EDGES);
-                    if (!qr.isValid()) continue;
-    
-                    int edgeId = qr.getClosestEdge().getEdge();
-                    if (edgeIds.contains(edgeId)) continue;
-    
-                    edgeIds.add(edgeId);
-                    EdgeIteratorState edgeIteratorState = graph.getEdgeIteratorState(edgeId, qr.getClosestEdge().getAdjNode());
-    
-                    double value;
-                    switch (TrafficAndRoutingService.speedChoice) {
-                        case avg_actual_from_hereMaps:
-                        default:
-                            value = entrySpeed.get(0);
-                            break;
-                        case free_flow_from_hereMaps:
-                            value = entrySpeed.get(1);
-                            break;
-                        case lower_of_two:
-                            value = Math.min(entrySpeed.get(0), entrySpeed.get(1));
-                            break;
-                    }
-    
-                    // Apply scaling per transport mode
-                    if (mode == TransportMode.motorcycle) {
-                        value *= 0.9; 
-                    } else if (mode == TransportMode.bike) {
-                        value *= 0.4; 
-                    } else if (mode == TransportMode.foot) {
-                        value = 4.3; 
-                    }
-    
-                    value = Math.min(value, avgSpeedEnc.getMaxDecimal());
+            for (int c = 0; c < changedEdges.size(); c++) {
+                int edgeId = changedEdges.get(c);
+                int segment = changedSegments.get(c);
+                if (segment < 0) {
+                    // back to the speed of the graph
+                    speed[edgeId] = Float.NaN;
+                    continue;
+                }
+                float[] entrySpeed = tempdt.getSpeed()[segment];
     
-                    if (value > 0) {
-                        edgeIteratorState.set(avgSpeedEnc, value);
-                    } else {
-                        edgeIteratorState.set(avgSpeedEnc, avgSpeedEnc.getMaxDecimal());
-                    }
+                double value;
+                switch (TrafficAndRoutingService.speedChoice) {
+                    case avg_actual_from_hereMaps:
+                    default:
+                        value = entrySpeed[0];
+                        break;
+                    case free_flow_from_hereMaps:
+                        value = entrySpeed[1];
+                        break;
+                    case lower_of_two:
+                        value = Math.min(entrySpeed[0], entrySpeed[1]);
+                        break;
+                }
+
+                // Apply scaling per transport mode
+                if (mode == TransportMode.motorcycle) {
+                    value *= 0.9; 
+                } else if (mode == TransportMode.bike) {
+                    value *= 0.4; 
+                } else if (mode == TransportMode.foot) {
+                    value = 4.3; 
+                }
+
+                value = Math.min(value, avgSpeedEnc.getMaxDecimal());
+
+                if (value > 0) {
+                    speed[edgeId] = (float) value;
+                } else {
+                    speed[edgeId] = (float) avgSpeedEnc.getMaxDecimal();
                 }
             }
     
             // Update travel time
-            DecimalEncodedValue avgTimeEnc = encoder.getDecimalEncodedValue("time");
-            AllEdgesIterator allEdges = graph.getAllEdges();
-            while (allEdges.next()) {
-                int edgeId = allEdges.getEdge();
-                int adjNode = allEdges.getAdjNode();
-                EdgeIteratorState edgeIteratorState = graph.getEdgeIteratorState(edgeId, adjNode);
-                double speed = edgeIteratorState.get(avgSpeedEnc);
-                double time = edgeIteratorState.getDistance() / (speed * 3.6);
-                if (speed == 0) {
-                    time = edgeIteratorState.getDistance() / (avgSpeedEnc.getMaxDecimal() * 3.6);
+            EdgeAnnotationEngine.EdgeFunction travelTime = edge -> {
+                double edgeSpeed = Float.isNaN(speed[edge.getEdge()]) ? edge.get(avgSpeedEnc) : speed[edge.getEdge()];
+                double time = edge.getDistance() / (edgeSpeed * 3.6);
+                if (edgeSpeed == 0) {
+                    time = edge.getDistance() / (avgSpeedEnc.getMaxDecimal() * 3.6);
                 }
-                edgeIteratorState.set(avgTimeEnc, time);
-                edgeIteratorState.setReverse(avgTimeEnc, time);
+                return time;
+            };
+            if (allTimes) {
+                // only the edges with a new or an expired speed
+                times[mode.ordinal()] = snapshot.copyTimes(mode);
+                engine.updateEdges(graph, times[mode.ordinal()], changedEdges, travelTime);
+            } else {
+                // the times start with the default time, the first feed computes every edge
+                times[mode.ordinal()] = engine.computeEdges(graph, travelTime);
             }
+            speeds[mode.ordinal()] = speed;
         }
+        allTimes = true;
+        liveEdges = stillLive;
+        if (expired > 0)
+            System.out.println("Traffic speeds of " + expired + " edges expired");
     }
-    
 
-
-    // XML parsing method removed as we've migrated to HERE Traffic API v7
-    
-    /**
-     * Parse JSON data from HERE Maps API v7
-     */
-    private void parseHEREMapJSON(String Url) {
-        try {
-            // Create URL and open connection
-            URL url = new URL(Url);
-            BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream()));
-            
-            // Parse JSON response
-            JSONParser parser = new JSONParser();
-            JSONObject jsonResponse = (JSONObject) parser.parse(reader);
-            
-            // Initialize traffic data container
-            TrafficData tempdt = new TrafficData();
-            tempdt.setSpeed(new ArrayList<>());
-            tempdt.setLat(new ArrayList<>());
-            tempdt.setLons(new ArrayList<>());
-            
-            // Get results array from response
-            JSONArray results = (JSONArray) jsonResponse.get("results");
-            if (results == null) {
-                System.out.println("No results found in traffic data");
-                return;
-            }
-            
-            // Process each flow segment
-            for (Object resultObj : results) {
-                JSONObject result = (JSONObject) resultObj;
-                
-                // Get the location information
-                JSONObject location = (JSONObject) result.get("location");
-                if (location == null) continue;
-                
-                // Get shape points (coordinates)
-                JSONObject locationReferencing = (JSONObject) location.get("shape");
-                if (locationReferencing == null) continue;
-                
-                JSONArray coordinates = (JSONArray) locationReferencing.get("coordinates");
-                if (coordinates == null || coordinates.isEmpty()) continue;
-                
-                // Get functional class (road type)
-                Long functionalClass = (Long) location.get("functionalClass");
-                float fc = functionalClass != null ? functionalClass.floatValue() : 5;
-                
-                // Get flow data
-                JSONObject flowData = (JSONObject) result.get("currentFlow");
-                if (flowData == null) continue;
-                
-                // Get speed values
-                JSONObject speed = (JSONObject) flowData.get("speed");
-                if (speed == null) continue;
-                
-                // Extract actual speed (SU in v6) and free flow speed (FF in v6)
-                float actualSpeed = 0;
-                float freeFlowSpeed = 0;
-                
-                if (speed.get("actual") != null) {
-                    actualSpeed = Float.parseFloat(speed.get("actual").toString());
-                }
-                
-                if (speed.get("freeFlow") != null) {
-                    freeFlowSpeed = Float.parseFloat(speed.get("freeFlow").toString());
-                }
-                
-                // Get confidence value (CN in v6)
-                float confidence = 0;
-                if (flowData.get("confidence") != null) {
-                    confidence = Float.parseFloat(flowData.get("confidence").toString()) / 100f; // Convert percentage to 0-1 scale
-                }
-                
-                // Apply the same filtering as in the XML version
-                if (confidence >= 0.7 && fc <= TrafficAndRoutingService.functional_road_class_here_maps) {
-                    ArrayList<Float> latitudes = new ArrayList<>();
-                    ArrayList<Float> longitudes = new ArrayList<>();
-                    
-                    // Extract coordinates
-                    for (Object coordObj : coordinates) {
-                        JSONObject coord = (JSONObject) coordObj;
-                        if (coord.get("lat") != null && coord.get("lng") != null) {
-                            float lat = Float.parseFloat(coord.get("lat").toString());
-                            float lng = Float.parseFloat(coord.get("lng").toString());
-                            latitudes.add(lat);
-                            longitudes.add(lng);
-                        }
-                    }
-                    
-                    if (!latitudes.isEmpty() && !longitudes.isEmpty()) {
-                        tempdt.getLat().add(latitudes);
-                        tempdt.getLons().add(longitudes);
-                        ArrayList<Float> combospeed = new ArrayList<>(2);
-                        combospeed.add(actualSpeed);
-                        combospeed.add(freeFlowSpeed);
-                        tempdt.getSpeed().add(combospeed);
-                    }
+    // the edges that have a speed in the current version, e.g. after a restart
+    private void startTracking(EdgeDataSnapshot snapshot, long now) {
+        updated = new long[snapshot.getEdges()];
+        for (int edge = 0; edge < updated.length; edge++) {
+            for (TransportMode mode : TransportMode.values()) {
+                if (!Double.isNaN(snapshot.getSpeed(mode, edge))) {
+                    updated[edge] = now;
+                    liveEdges.add(edge);
+                    break;
                 }
             }
-            
-            // Feed the parsed data
-            feed(tempdt);
-            
-        } catch (IOException | ParseException e) {
-            e.printStackTrace();
-        } finally {
-            System.out.println("Traffic parsing done...");
         }
     }
 
+    private void publishFeed(TrafficData tempdt, float[][] speeds, float[][] times) {
+        this.dt = tempdt;
+        EdgeDataSnapshot snapshot = store.publishTraffic(speeds, times);
+        tiles.publish(tempdt, snapshot.getVersion());
+        System.out.println("Published traffic data version " + snapshot.getVersion());
+    }
+    
+
     public TrafficData getRoads() {
         return dt;
     }
 
+    public TrafficTiles getTiles() {
+        return tiles;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,294 @@
+package com.map.app.containers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.carrotsearch.hppc.cursors.LongObjectCursor;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHBitSetImpl;
+import com.map.app.graphhopperfuncs.SegmentEdgeCache;
+import com.map.app.model.TrafficData;
+
+/**
+ * The traffic segments of the last feed by web map tile, so that a map fetches the segments of
+ * its view instead of all of them. The segments are indexed once per feed at INDEX_ZOOM, a tile
+ * of a lower zoom joins the index tiles it covers, a tile of a higher zoom is its index tile.
+ * Every tile is encoded once per feed and then served from the cache of the feed.
+ * <p>
+ * A segment keeps its id in all feeds as long as its shape does not change. A client that has
+ * the tile of the previous feed asks for the changes since that version: the segments with a
+ * new speed and the ids of the segments that are gone.
+ */
+public class TrafficTiles {
+	public static final int INDEX_ZOOM = 14;
+	public static final int MAX_ZOOM = 22;
+	private static final JsonFactory JSON = new JsonFactory();
+
+	// ids of the shapes of the last two feeds by shape key, publish replaces the map
+	private LongIntHashMap ids = new LongIntHashMap();
+	private int nextId;
+	private volatile Feed current = new Feed(new TrafficData(), 0, new long[0], new int[0], null);
+
+	/**
+	 * Indexes the segments of a feed, called by the feed that published the edge data version.
+	 */
+	public synchronized void publish(TrafficData data, long version) {
+		int segments = data.getLat() == null ? 0 : data.getLat().length;
+		int[] segmentIds = new int[segments];
+		long[] keys = new long[segments];
+		// the shapes of the previous feed keep their ids for its changes, older shapes are dropped
+		Feed previous = current;
+		LongIntHashMap feedIds = new LongIntHashMap(previous.keys.length + segments);
+		for (int i = 0; i < previous.keys.length; i++) {
+			feedIds.put(previous.keys[i], previous.segmentIds[i]);
+		}
+		for (int i = 0; i < segments; i++) {
+			keys[i] = SegmentEdgeCache.key(data.getLat()[i], data.getLons()[i]);
+			int id = ids.getOrDefault(keys[i], -1);
+			if (id < 0)
+				id = nextId++;
+			feedIds.put(keys[i], id);
+			segmentIds[i] = id;
+		}
+		ids = feedIds;
+		// only the previous feed is kept for the changes, not the one before it
+		previous.previous = null;
+		current = new Feed(data, version, keys, segmentIds, previous);
+	}
+
+	public long getVersion() {
+		return current.version;
+	}
+
+	/**
+	 * The encoded tile of the last feed, the changes since the given version if it is the version of
+	 * the previous or of the last feed, otherwise all segments of the tile.
+	 * @param since the version the client has, -1 for none
+	 */
+	public Tile getTile(int z, int x, int y, long since) {
+		if (z < 0 || z > MAX_ZOOM)
+			throw new IllegalArgumentException("Zoom must be between 0 and " + MAX_ZOOM + " but was " + z);
+		if (x < 0 || y < 0 || x >= 1 << z || y >= 1 << z)
+			throw new IllegalArgumentException("Tile " + x + "/" + y + " is outside of zoom " + z);
+		if (z > INDEX_ZOOM) {
+			// the segments of the index tile, the client clips them
+			x >>= z - INDEX_ZOOM;
+			y >>= z - INDEX_ZOOM;
+			z = INDEX_ZOOM;
+		}
+		Feed feed = current;
+		// read once, the next publish clears it
+		Feed previous = feed.previous;
+		Feed base = null;
+		if (since == feed.version)
+			base = feed;
+		else if (previous != null && since == previous.version)
+			base = previous;
+		String cacheKey = z + "/" + x + "/" + y + (base == null ? "" : "/" + base.version);
+		Tile tile = feed.tiles.get(cacheKey);
+		if (tile == null) {
+			tile = feed.encode(z, x, y, base);
+			// concurrent requests may encode a tile twice, both encodings are equal. Empty tiles
+			// are not kept, the tiles a client may ask for are not bounded
+			if (!tile.isEmpty())
+				feed.tiles.putIfAbsent(cacheKey, tile);
+		}
+		return tile;
+	}
+
+	static int lonToTileX(double lon, int zoom) {
+		int x = (int) Math.floor((lon + 180) / 360 * (1 << zoom));
+		return Math.min(Math.max(x, 0), (1 << zoom) - 1);
+	}
+
+	static int latToTileY(double lat, int zoom) {
+		double rad = Math.toRadians(lat);
+		int y = (int) Math.floor((1 - Math.log(Math.tan(rad) + 1 / Math.cos(rad)) / Math.PI) / 2 * (1 << zoom));
+		return Math.min(Math.max(y, 0), (1 << zoom) - 1);
+	}
+
+	/**
+	 * A tile as JSON with the fields of TrafficData for the segments and their ids, and if it
+	 * holds changes the version they are based on and the ids of the removed segments.
+	 */
+	public static class Tile {
+		private final byte[] json;
+		private final String etag;
+		private final boolean empty;
+
+		Tile(byte[] json, String etag, boolean empty) {
+			this.json = json;
+			this.etag = etag;
+			this.empty = empty;
+		}
+
+		/**
+		 * True if the tile has no segments and no removed segments.
+		 */
+		public boolean isEmpty() {
+			return empty;
+		}
+
+		public byte[] getJson() {
+			return json;
+		}
+
+		/**
+		 * The quoted entity tag, the version of the tile and of the base of the changes.
+		 */
+		public String getEtag() {
+			return etag;
+		}
+	}
+
+	private static class Feed {
+		private final TrafficData data;
+		private final long version;
+		// shape key and id by segment
+		private final long[] keys;
+		private final int[] segmentIds;
+		// segment by id
+		private final IntIntHashMap segments;
+		// segments by index tile, x in the high and y in the low bits
+		private final LongObjectHashMap<IntArrayList> index = new LongObjectHashMap<>();
+		private final Map<String, Tile> tiles = new ConcurrentHashMap<>();
+		private volatile Feed previous;
+
+		Feed(TrafficData data, long version, long[] keys, int[] segmentIds, Feed previous) {
+			this.data = data;
+			this.version = version;
+			this.keys = keys;
+			this.segmentIds = segmentIds;
+			this.previous = previous;
+			this.segments = new IntIntHashMap(segmentIds.length);
+			for (int i = 0; i < segmentIds.length; i++) {
+				segments.put(segmentIds[i], i);
+				indexSegment(i);
+			}
+		}
+
+		// every index tile of the bounds of the segment, traffic segments span a few at most
+		private void indexSegment(int segment) {
+			float[] lats = data.getLat()[segment];
+			float[] lons = data.getLons()[segment];
+			if (lats.length == 0)
+				return;
+			float minLat = lats[0], maxLat = lats[0], minLon = lons[0], maxLon = lons[0];
+			for (int i = 1; i < lats.length; i++) {
+				minLat = Math.min(minLat, lats[i]);
+				maxLat = Math.max(maxLat, lats[i]);
+				minLon = Math.min(minLon, lons[i]);
+				maxLon = Math.max(maxLon, lons[i]);
+			}
+			for (int x = lonToTileX(minLon, INDEX_ZOOM); x <= lonToTileX(maxLon, INDEX_ZOOM); x++) {
+				// y grows to the south
+				for (int y = latToTileY(maxLat, INDEX_ZOOM); y <= latToTileY(minLat, INDEX_ZOOM); y++) {
+					long key = ((long) x << 32) | y;
+					IntArrayList tileSegments = index.get(key);
+					if (tileSegments == null) {
+						tileSegments = new IntArrayList();
+						index.put(key, tileSegments);
+					}
+					tileSegments.add(segment);
+				}
+			}
+		}
+
+		// the segments of the index tiles within the tile, every segment once
+		private IntArrayList segmentsIn(int z, int x, int y) {
+			int shift = INDEX_ZOOM - z;
+			if (shift == 0) {
+				IntArrayList tileSegments = index.get(((long) x << 32) | y);
+				return tileSegments == null ? new IntArrayList() : tileSegments;
+			}
+			IntArrayList result = new IntArrayList();
+			GHBitSet added = new GHBitSetImpl(segmentIds.length);
+			for (LongObjectCursor<IntArrayList> tile : index) {
+				int indexX = (int) (tile.key >>> 32);
+				int indexY = (int) tile.key;
+				if (indexX >> shift != x || indexY >> shift != y)
+					continue;
+				for (int i = 0; i < tile.value.size(); i++) {
+					int segment = tile.value.get(i);
+					if (!added.contains(segment)) {
+						added.add(segment);
+						result.add(segment);
+					}
+				}
+			}
+			return result;
+		}
+
+		private Tile encode(int z, int x, int y, Feed base) {
+			IntArrayList tileSegments = segmentsIn(z, x, y);
+			IntArrayList removed = new IntArrayList();
+			if (base != null) {
+				// the segments with a new speed or a new shape
+				IntArrayList changed = new IntArrayList();
+				for (int i = 0; i < tileSegments.size(); i++) {
+					int segment = tileSegments.get(i);
+					int baseSegment = base.segments.getOrDefault(segmentIds[segment], -1);
+					if (baseSegment < 0 || !Arrays.equals(data.getSpeed()[segment], base.data.getSpeed()[baseSegment]))
+						changed.add(segment);
+				}
+				tileSegments = changed;
+				IntArrayList baseSegments = base.segmentsIn(z, x, y);
+				for (int i = 0; i < baseSegments.size(); i++) {
+					int id = base.segmentIds[baseSegments.get(i)];
+					if (!segments.containsKey(id))
+						removed.add(id);
+				}
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (JsonGenerator gen = JSON.createGenerator(out)) {
+				gen.writeStartObject();
+				gen.writeNumberField("version", version);
+				if (base != null)
+					gen.writeNumberField("since", base.version);
+				gen.writeArrayFieldStart("ids");
+				for (int i = 0; i < tileSegments.size(); i++) {
+					gen.writeNumber(segmentIds[tileSegments.get(i)]);
+				}
+				gen.writeEndArray();
+				writeRows(gen, "lat", data.getLat(), tileSegments);
+				writeRows(gen, "lons", data.getLons(), tileSegments);
+				writeRows(gen, "speed", data.getSpeed(), tileSegments);
+				if (base != null) {
+					gen.writeArrayFieldStart("removed");
+					for (int i = 0; i < removed.size(); i++) {
+						gen.writeNumber(removed.get(i));
+					}
+					gen.writeEndArray();
+				}
+				gen.writeEndObject();
+			} catch (IOException e) {
+				// a byte array stream does not throw
+				throw new UncheckedIOException(e);
+			}
+			return new Tile(out.toByteArray(), "\"" + version + (base == null ? "" : "-" + base.version) + "\"", tileSegments.isEmpty() && removed.isEmpty());
+		}
+
+		private static void writeRows(JsonGenerator gen, String field, float[][] rows, IntArrayList tileSegments) throws IOException {
+			gen.writeArrayFieldStart(field);
+			for (int i = 0; i < tileSegments.size(); i++) {
+				float[] row = rows[tileSegments.get(i)];
+				gen.writeStartArray();
+				for (float value : row) {
+					gen.writeNumber(value);
+				}
+				gen.writeEndArray();
+			}
+			gen.writeEndArray();
+		}
+	}
+}
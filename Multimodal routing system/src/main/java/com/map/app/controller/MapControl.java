@@ -3,16 +3,29 @@ package com.map.app.controller;
 import java.util.ArrayList;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import com.map.app.containers.IsochroneTransformer;
+import com.map.app.containers.MatrixTransformer;
+import com.map.app.containers.RouteDeltaConverter;
+import com.map.app.containers.TrafficTiles;
 import com.map.app.containers.UrlTransformer;
+import com.map.app.model.ExposureMatrix;
+import com.map.app.model.Isochrone;
+import com.map.app.model.PolylineSerializer;
+import com.map.app.model.RouteCacheStats;
 import com.map.app.model.UrlContainer;
 import com.map.app.model.RoutePath;
 import com.map.app.model.TrafficData;
@@ -48,8 +61,10 @@ public class MapControl {
         return "index";
     }
 
+    // JSON, JSON with polyline points (mediaType=polyline) or binary deltas (mediaType=delta)
     @ResponseBody
-    @RequestMapping(value = "/api/routing", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/api/routing", method = RequestMethod.GET,
+            produces = {"application/json", PolylineSerializer.MEDIA_TYPE, RouteDeltaConverter.MEDIA_TYPE})
     public ArrayList<RoutePath> fetchJSONResponse(@ModelAttribute("pt") UrlTransformer pt, BindingResult errors) {
         if (errors.hasErrors()) {
             // Handle errors
@@ -59,9 +74,66 @@ public class MapControl {
         return trs.getPath(rp);
     }
 
+    @ResponseBody
+    @RequestMapping(value = "/api/matrix", method = {RequestMethod.GET, RequestMethod.POST}, produces = "application/json")
+    public ResponseEntity<ExposureMatrix> fetchMatrix(@ModelAttribute("mt") MatrixTransformer mt, BindingResult errors) {
+        if (errors.hasErrors()) {
+            // Handle errors
+            return ResponseEntity.ok(new ExposureMatrix());
+        }
+        try {
+            return ResponseEntity.ok(trs.getMatrix(mt.convert()));
+        } catch (IllegalArgumentException e) {
+            // missing or malformed locations, an unknown vehicle or route type, too many locations
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @ResponseBody
+    @RequestMapping(value = "/api/isochrone", method = {RequestMethod.GET, RequestMethod.POST}, produces = "application/json")
+    public ResponseEntity<Isochrone> fetchIsochrone(@ModelAttribute("it") IsochroneTransformer it, BindingResult errors) {
+        if (errors.hasErrors()) {
+            // Handle errors
+            return ResponseEntity.ok(new Isochrone());
+        }
+        try {
+            return ResponseEntity.ok(trs.getIsochrone(it.convert()));
+        } catch (IllegalArgumentException e) {
+            // missing or malformed parameters, an unknown vehicle, a time limit out of range
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @ResponseBody
+    @RequestMapping(value = "/api/route_cache", method = RequestMethod.GET, produces = "application/json")
+    public RouteCacheStats fetchRouteCacheStats() {
+        // empty counters if the cache is off
+        RouteCacheStats stats = trs.getRouteCacheStats();
+        return stats == null ? new RouteCacheStats() : stats;
+    }
+
     @RequestMapping(value = "/traffic", method = RequestMethod.GET, produces = "application/json")
     @ResponseBody
     public TrafficData show() {
         return trs.getAll();
     }
+
+    // the segments of a map tile, only the changes if since is the version the client has.
+    // A request with the ETag of the tile in If-None-Match gets 304 without a body
+    @RequestMapping(value = "/traffic/tiles/{z}/{x}/{y}", method = RequestMethod.GET, produces = "application/json")
+    @ResponseBody
+    public ResponseEntity<byte[]> showTile(@PathVariable int z, @PathVariable int x, @PathVariable int y,
+                                           @RequestParam(defaultValue = "-1") long since) {
+        TrafficTiles.Tile tile;
+        try {
+            tile = trs.getTrafficTile(z, x, y, since);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .eTag(tile.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(tile.getJson());
+    }
 }
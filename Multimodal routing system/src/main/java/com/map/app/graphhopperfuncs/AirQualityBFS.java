@@ -1,48 +1,37 @@
 package com.map.app.graphhopperfuncs;
 
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Properties;
-import java.util.Set;
 
-import com.graphhopper.GraphHopper;
-import com.graphhopper.coll.GHBitSet;
-import com.graphhopper.coll.GHBitSetImpl;
-import com.graphhopper.routing.ev.DecimalEncodedValue;
-import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.storage.Graph;
-import com.graphhopper.util.EdgeExplorer;
-import com.graphhopper.util.EdgeIterator;
-import com.graphhopper.util.EdgeIteratorState;
-import com.graphhopper.util.XFirstSearch;
+import com.graphhopper.storage.NodeAccess;
 import com.map.app.model.AirQuality;
+import com.map.app.service.RoutingConfig;
 import com.map.app.service.TransportMode;
 
 /**
  * @author Siftee
  */
-public class AirQualityBFS extends XFirstSearch {
-	// does a BFS traversal and assigns edge with air quality value as average of
-	// aqi value of base and adjacent node.
+public class AirQualityBFS {
+	// interpolates the aqi of every node once and assigns each edge the average
+	// of the aqi values of its base and adjacent node.
 	private final Graph gh;
-	private final GraphHopper hopper;
 	private final ArrayList<AirQuality> ap;
+	private final EdgeAnnotationEngine engine;
+	private final EdgeDataStore store;
+	private final RoutingConfig config;
 
-	public AirQualityBFS(GraphHopper hopper, Graph gh, ArrayList<AirQuality> ap) {
+	public AirQualityBFS(Graph gh, ArrayList<AirQuality> ap, EdgeAnnotationEngine engine, EdgeDataStore store, RoutingConfig config) {
 		this.gh = gh;
-		this.hopper = hopper;
+		this.config = config;
 		this.ap = ap;
+		this.engine = engine;
+		this.store = store;
 	}
 
-	@Override
-	protected GHBitSet createBitSet() {
-		return new GHBitSetImpl();
-	}
-	//public double get
-	@Override
-	public void start(EdgeExplorer explorer, int temp) {
+	/**
+	 * Computes the smoke value of every edge, routing continues with the current version meanwhile.
+	 */
+	public float[] calcSmoke() {
 		// Print debug information about air quality data being used
 		System.out.println("\n===== AIR QUALITY ROUTING DATA =====");
 		System.out.println("Using " + ap.size() + " air quality data points for routing");
@@ -59,56 +48,37 @@ public class AirQualityBFS extends XFirstSearch {
 				break;
 			}
 		}
-		int defaultSmoke;
-		Properties prop=new Properties();
-		try (FileInputStream ip = new FileInputStream("config.properties")) {
-			prop.load(ip);
-			defaultSmoke = Integer.parseInt(prop.getProperty("default_smoke"));
-		} catch (IOException e) {
-			throw new RuntimeException("Config properties are not found. Aborting ...");
-		}
+		// IDW only uses the nearest stations within the cutoff
+		AirQualityIndex index = new AirQualityIndex(ap, config.getIdwNeighbours(), config.getIdwCutoffKm());
+		return calcSmoke(index, config.getDefaultSmoke());
+	}
 
-		for (TransportMode mode : TransportMode.values()) {
-			FlagEncoder encoder = hopper.getEncodingManager().getEncoder(mode.toString());
-			DecimalEncodedValue smokeEnc = encoder.getDecimalEncodedValue("smoke");
-			// SimpleIntDeque fifo = new SimpleIntDeque();
-			// GHBitSet visited = createBitSet();
-			// System.out.println("KYA"+gh.getNodes());
-			int count = 0;
-			int processedEdges = 0;
-			Set<Integer> edge_uni=new HashSet<>();
-			System.out.println("Processing nodes from " + temp + " to " + gh.getNodes());
-			for (int startNode = temp; startNode < gh.getNodes(); startNode++) {
-				EdgeIterator edgeIterator = explorer.setBaseNode(startNode);
-				while (edgeIterator.next()) {
-					EdgeIteratorState edge = gh.getEdgeIteratorState(edgeIterator.getEdge(), edgeIterator.getAdjNode());
-					edgeIterator.getEdge();
-					if(edge_uni.contains(edgeIterator.getEdge()))
-					{
-						continue;
-					}
-					int connectedId = edgeIterator.getAdjNode();
-					double base_lat = gh.getNodeAccess().getLat(startNode);
-					double base_lon = gh.getNodeAccess().getLon(startNode);
-					double airQualityBase = IDW(base_lat, base_lon);
-					double adjacent_lat = gh.getNodeAccess().getLat(connectedId);
-					double adjacent_lon = gh.getNodeAccess().getLon(connectedId);
-					double airQualityAdj = IDW(adjacent_lat, adjacent_lon);
-					if (Double.isNaN(airQualityAdj) || Double.isNaN(airQualityBase)) {
-						edge.set(smokeEnc, defaultSmoke);
-						edge.setReverse(smokeEnc, defaultSmoke);
-						count++;
-					} else {
-						edge.set(smokeEnc, Math.max(convToConcentration((airQualityBase + airQualityAdj) / 2), defaultSmoke));
-						edge.setReverse(smokeEnc, Math.max(convToConcentration((airQualityBase + airQualityAdj) / 2), defaultSmoke));
-						count++;
-					}
-					edge_uni.add(edge.getEdge());
-					processedEdges++;
-				}
+	/**
+	 * Smoke value of every edge for the stations of the given index, edges without a
+	 * station within the cutoff at both ends get the default smoke.
+	 */
+	public float[] calcSmoke(AirQualityIndex index, double defaultSmoke) {
+		// interpolate every node once in parallel, the edges and transport modes only read this array
+		NodeAccess nodeAccess = gh.getNodeAccess();
+		System.out.println("Interpolating " + gh.getNodes() + " nodes on " + engine.getParallelism() + " threads");
+		double[] nodeAqi = engine.computeNodes(gh.getNodes(), node -> index.interpolate(nodeAccess.getLat(node), nodeAccess.getLon(node)));
+		// each edge is visited once, its smoke value holds for both directions
+		return engine.computeEdges(gh, edge -> {
+			double airQualityBase = nodeAqi[edge.getBaseNode()];
+			double airQualityAdj = nodeAqi[edge.getAdjNode()];
+			if (Double.isNaN(airQualityAdj) || Double.isNaN(airQualityBase)) {
+				return defaultSmoke;
 			}
-			System.out.println("Transport mode " + mode + ": Applied air quality data to " + processedEdges + " road segments");
-		}
+			return Math.max(convToConcentration((airQualityBase + airQualityAdj) / 2), defaultSmoke);
+		});
+	}
+
+	/**
+	 * Publishes the values of {@link #calcSmoke()} as a new edge data version.
+	 */
+	public void apply(float[] smoke) {
+		EdgeDataSnapshot snapshot = store.publishSmoke(smoke);
+		System.out.println("Applied air quality data to " + smoke.length + " road segments for " + TransportMode.values().length + " transport modes (version " + snapshot.getVersion() + ")");
 		System.out.println("=====================================");
 	}
 
@@ -141,37 +111,5 @@ public class AirQualityBFS extends XFirstSearch {
 			return ((aqi-401)*1.51)+350.5;		
 		}
 	}
-	
-	private double IDW(double fromlat, double fromlon) {
-		double numer = 0;
-		double denom = 0;
-		double exp = 2;
-		for (AirQuality point : ap) {
-			double v = point.getAqi();
-			double d = haversine(point.getLat(), point.getLon(), fromlat, fromlon);
-			if (d == 0) {
-				return point.getAqi();
-			}
-			numer = numer + (v / Math.pow(d, exp));
-			denom = denom + (1 / Math.pow(d, exp));
-		}
-		return numer / denom;
-	}
-
-	private double haversine(double lat1, double lon1, double lat2, double lon2) {
-		// distance between latitudes and longitudes
-		double dLat = Math.toRadians(lat2 - lat1);
-		double dLon = Math.toRadians(lon2 - lon1);
-
-		// convert to radians
-		lat1 = Math.toRadians(lat1);
-		lat2 = Math.toRadians(lat2);
-
-		// apply formulae
-		double a = Math.pow(Math.sin(dLat / 2), 2) + Math.pow(Math.sin(dLon / 2), 2) * Math.cos(lat1) * Math.cos(lat2);
-		double rad = 6371;
-		double c = 2 * Math.asin(Math.sqrt(a));
-		return rad * c;
-	}
 
 }
\ No newline at end of file
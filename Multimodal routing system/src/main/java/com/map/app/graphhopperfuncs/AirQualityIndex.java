@@ -0,0 +1,172 @@
+package com.map.app.graphhopperfuncs;
+
+import java.util.List;
+
+import com.map.app.model.AirQuality;
+
+/**
+ * Uniform lat/lon grid over the air quality stations. Inverse distance weighting
+ * only looks at the k nearest stations within a cutoff radius, so the cost of one
+ * interpolation depends on the local station density instead of the total number
+ * of stations (WAQI plus every historical CSV location).
+ */
+public class AirQualityIndex {
+	// same earth radius (km) as the haversine used for the interpolation
+	private static final double RADIUS = 6371;
+	// upper bound on the number of grid cells, the cell size grows for very sparse data
+	private static final int MAX_CELLS = 1 << 20;
+	private static final double EXP = 2;
+
+	private final int k;
+	private final double cutoffKm;
+	private final double minLat;
+	private final double minLon;
+	private final double cellDeg;
+	private final int rows;
+	private final int cols;
+	// stations sorted by cell, cellStart[c]..cellStart[c + 1] are the stations of cell c
+	private final int[] cellStart;
+	private final double[] lats;
+	private final double[] lons;
+	private final double[] aqis;
+
+	public AirQualityIndex(List<AirQuality> stations, int k, double cutoffKm) {
+		if (k < 1)
+			throw new IllegalArgumentException("idw_neighbours has to be at least 1 but was " + k);
+		if (!(cutoffKm > 0))
+			throw new IllegalArgumentException("idw_cutoff_km has to be positive but was " + cutoffKm);
+		this.k = k;
+		this.cutoffKm = cutoffKm;
+
+		double minLat = Double.MAX_VALUE, minLon = Double.MAX_VALUE;
+		double maxLat = -Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+		for (AirQuality station : stations) {
+			minLat = Math.min(minLat, station.getLat());
+			minLon = Math.min(minLon, station.getLon());
+			maxLat = Math.max(maxLat, station.getLat());
+			maxLon = Math.max(maxLon, station.getLon());
+		}
+		if (stations.isEmpty()) {
+			minLat = minLon = maxLat = maxLon = 0;
+		}
+		double cellDeg = Math.toDegrees(cutoffKm / RADIUS);
+		int rows = (int) ((maxLat - minLat) / cellDeg) + 1;
+		int cols = (int) ((maxLon - minLon) / cellDeg) + 1;
+		if ((long) rows * cols > MAX_CELLS) {
+			cellDeg *= Math.sqrt((double) rows * cols / MAX_CELLS) + 1e-9;
+			rows = (int) ((maxLat - minLat) / cellDeg) + 1;
+			cols = (int) ((maxLon - minLon) / cellDeg) + 1;
+		}
+		this.minLat = minLat;
+		this.minLon = minLon;
+		this.cellDeg = cellDeg;
+		this.rows = rows;
+		this.cols = cols;
+
+		// counting sort of the stations by cell
+		int n = stations.size();
+		int[] cellOf = new int[n];
+		cellStart = new int[rows * cols + 1];
+		for (int i = 0; i < n; i++) {
+			AirQuality station = stations.get(i);
+			cellOf[i] = row(station.getLat()) * cols + col(station.getLon());
+			cellStart[cellOf[i] + 1]++;
+		}
+		for (int c = 0; c < rows * cols; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		int[] fill = new int[rows * cols];
+		lats = new double[n];
+		lons = new double[n];
+		aqis = new double[n];
+		for (int i = 0; i < n; i++) {
+			int pos = cellStart[cellOf[i]] + fill[cellOf[i]]++;
+			AirQuality station = stations.get(i);
+			lats[pos] = station.getLat();
+			lons[pos] = station.getLon();
+			aqis[pos] = station.getAqi();
+		}
+	}
+
+	public int size() {
+		return aqis.length;
+	}
+
+	/**
+	 * Inverse distance weighted aqi of the k nearest stations within the cutoff.
+	 * Returns NaN if there is no station within the cutoff.
+	 */
+	public double interpolate(double lat, double lon) {
+		if (aqis.length == 0)
+			return Double.NaN;
+		double dLat = Math.toDegrees(cutoffKm / RADIUS);
+		int r0 = row(lat - dLat), r1 = row(lat + dLat);
+		// widest longitude difference that can still be within the cutoff on this latitude band
+		double cosLat = Math.cos(Math.toRadians(Math.min(90, Math.abs(lat) + dLat)));
+		double sinHalf = Math.sin(cutoffKm / (2 * RADIUS));
+		int c0 = 0, c1 = cols - 1;
+		if (cosLat > sinHalf) {
+			double dLon = Math.toDegrees(2 * Math.asin(sinHalf / cosLat));
+			c0 = col(lon - dLon);
+			c1 = col(lon + dLon);
+		}
+
+		// k nearest so far, sorted by distance
+		double[] nearestDist = new double[k];
+		double[] nearestAqi = new double[k];
+		int found = 0;
+		for (int r = r0; r <= r1; r++) {
+			for (int c = c0; c <= c1; c++) {
+				int cell = r * cols + c;
+				for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+					double d = haversine(lats[i], lons[i], lat, lon);
+					if (d == 0)
+						return aqis[i];
+					if (d > cutoffKm || found == k && d >= nearestDist[k - 1])
+						continue;
+					int pos = found < k ? found++ : k - 1;
+					while (pos > 0 && nearestDist[pos - 1] > d) {
+						nearestDist[pos] = nearestDist[pos - 1];
+						nearestAqi[pos] = nearestAqi[pos - 1];
+						pos--;
+					}
+					nearestDist[pos] = d;
+					nearestAqi[pos] = aqis[i];
+				}
+			}
+		}
+		if (found == 0)
+			return Double.NaN;
+		double numer = 0;
+		double denom = 0;
+		for (int i = 0; i < found; i++) {
+			double w = 1 / Math.pow(nearestDist[i], EXP);
+			numer += nearestAqi[i] * w;
+			denom += w;
+		}
+		return numer / denom;
+	}
+
+	private int row(double lat) {
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor((lat - minLat) / cellDeg)));
+	}
+
+	private int col(double lon) {
+		return Math.max(0, Math.min(cols - 1, (int) Math.floor((lon - minLon) / cellDeg)));
+	}
+
+	static double haversine(double lat1, double lon1, double lat2, double lon2) {
+		// distance between latitudes and longitudes
+		double dLat = Math.toRadians(lat2 - lat1);
+		double dLon = Math.toRadians(lon2 - lon1);
+
+		// convert to radians
+		lat1 = Math.toRadians(lat1);
+		lat2 = Math.toRadians(lat2);
+
+		// apply formulae
+		double a = Math.pow(Math.sin(dLat / 2), 2) + Math.pow(Math.sin(dLon / 2), 2) * Math.cos(lat1) * Math.cos(lat2);
+		double c = 2 * Math.asin(Math.sqrt(a));
+		return RADIUS * c;
+	}
+}
@@ -3,18 +3,19 @@ package com.map.app.graphhopperfuncs;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.weighting.*;
+import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
-
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.Properties;
+import com.map.app.service.RoutingConfig;
+import com.map.app.service.TransportMode;
 
 import static com.graphhopper.routing.weighting.TurnCostProvider.NO_TURN_COST_PROVIDER;
 
 /**
  * Calculates the fastest least air polluted route with the specified vehicle (VehicleEncoder). Calculates the weight
- * in seconds.
+ * in seconds: the time of the edge plus its exposure converted to seconds with the global constants of
+ * {@link ExposureNorms}, each weighted with its factor. The time is the one of the live speed of the snapshot
+ * if the edge has one, like {@link LiveSpeedWeighting}.
  * <p>
  *
  * @author Siftee
@@ -23,39 +24,43 @@ public class BalancedWeighting extends FastestWeighting {
     private static final String NAME="balanced";
     private static final String TIME_FACTOR="balanced.time_factor";
     private static final String POLLUTION_FACTOR="balanced.pollution_factor";
-    private final Double timeFactor;
-    private final Double pollutionFactor;
-    private final DecimalEncodedValue smokeEnc;
-    private final DecimalEncodedValue timeEnc;
-//    private final
+    private final double timeFactor;
+    private final double pollutionFactor;
+    private final EdgeDataSnapshot snapshot;
+    private final Graph baseGraph;
+    private final TransportMode mode;
+    // pollution factor * seconds per unit of exposure
+    private final double exposureFactor;
+    private final double minExposurePerMeter;
+    private final DecimalEncodedValue avgSpeedEnc;
+    private final double minTimeFactor;
 
-    protected BalancedWeighting(FlagEncoder encoder) {
-        this(encoder, NO_TURN_COST_PROVIDER);
+    protected BalancedWeighting(FlagEncoder encoder, Graph baseGraph, EdgeDataSnapshot snapshot, ExposureNorms norms, RoutingConfig config) {
+        this(encoder, NO_TURN_COST_PROVIDER, baseGraph, snapshot, norms, config);
     }
-    public BalancedWeighting(FlagEncoder encoder, TurnCostProvider turnCostProvider) {
-        this(encoder, new PMap(0), turnCostProvider);
+    public BalancedWeighting(FlagEncoder encoder, TurnCostProvider turnCostProvider, Graph baseGraph, EdgeDataSnapshot snapshot, ExposureNorms norms, RoutingConfig config) {
+        this(encoder, new PMap(0), turnCostProvider, baseGraph, snapshot, norms, config);
     }
-    public BalancedWeighting(FlagEncoder encoder, PMap map) {
-        this(encoder, map, TurnCostProvider.NO_TURN_COST_PROVIDER);
+    public BalancedWeighting(FlagEncoder encoder, PMap map, Graph baseGraph, EdgeDataSnapshot snapshot, ExposureNorms norms, RoutingConfig config) {
+        this(encoder, map, TurnCostProvider.NO_TURN_COST_PROVIDER, baseGraph, snapshot, norms, config);
     }
-    public BalancedWeighting(FlagEncoder encoder,PMap map,TurnCostProvider turnCostProvider)
+    public BalancedWeighting(FlagEncoder encoder,PMap map,TurnCostProvider turnCostProvider, Graph baseGraph, EdgeDataSnapshot snapshot, ExposureNorms norms, RoutingConfig config)
     {
         super(encoder, turnCostProvider);
-        Properties prop=new Properties();
-        Double getTimeFactor, getPollutionFactor;
-        try (FileInputStream ip = new FileInputStream("config.properties")) {
-            prop.load(ip);
-            getTimeFactor = Double.parseDouble(prop.getProperty("balanced_time_factor"));
-            getPollutionFactor = Double.parseDouble(prop.getProperty("balanced_pollution_factor"));
-        } catch (IOException e) {
-            throw new RuntimeException("Config properties are not found. Aborting ...");
-        }
+        Double getTimeFactor = config.getBalancedTimeFactor();
+        Double getPollutionFactor = config.getBalancedPollutionFactor();
         getTimeFactor = getTimeFactor / (getTimeFactor + getPollutionFactor);
         getPollutionFactor = 1 - getTimeFactor;
         this.timeFactor = checkBounds(TIME_FACTOR, map.getDouble(TIME_FACTOR, getTimeFactor), 0.0D, 1D);
         this.pollutionFactor = checkBounds(POLLUTION_FACTOR, map.getDouble(POLLUTION_FACTOR, getPollutionFactor), 0.0D, 1D);
-        smokeEnc=encoder.getDecimalEncodedValue("smoke");
-        timeEnc=encoder.getDecimalEncodedValue("time");
+        this.baseGraph = baseGraph;
+        this.snapshot = snapshot;
+        this.mode = TransportMode.valueOf(encoder.toString());
+        // no norms (and snapshot) for the profile checks before the graph is loaded
+        this.exposureFactor = norms == null ? pollutionFactor : pollutionFactor * norms.getExposureToTime(mode);
+        this.minExposurePerMeter = norms == null ? 0 : norms.getMinExposurePerMeter(mode);
+        this.avgSpeedEnc = encoder.getAverageSpeedEnc();
+        this.minTimeFactor = LiveSpeedWeighting.minTimeFactor(encoder.getMaxSpeed(), avgSpeedEnc);
         if (timeFactor < 1e-5 && pollutionFactor < 1e-5)
             throw new IllegalArgumentException("[" + NAME + "] one of distance_factor or time_factor has to be non-zero");
     }
@@ -67,32 +72,30 @@ public class BalancedWeighting extends FastestWeighting {
         }
     }
 
+    @Override
+    public double getMinWeight(double distance) {
+        // the live speeds are at most the max of the speed encoding
+        return timeFactor * super.getMinWeight(distance) * minTimeFactor + exposureFactor * minExposurePerMeter * distance;
+    }
+
     @Override
     public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
-        double smoke = edgeState.get(smokeEnc);
-        double timeG = edgeState.get(timeEnc);
-        double timeT = super.calcEdgeWeight(edgeState, reverse);
-        // the magnitude of (smoke * pollutionFactor * timeG) is very high compared to (timeFactor * timeT)
-        int power10 = countDigit((long) (smoke * pollutionFactor * timeG));
-        // makes (timeFactor * timeT) in the same range by multiplying with 10^(number of digits)
-        double fastestWeight = timeFactor * timeT * Math.pow(10, power10);
-        double greenestWeight = smoke * pollutionFactor * timeG;
-        return fastestWeight + greenestWeight;
+        double time = super.calcEdgeWeight(edgeState, reverse);
+        // not accessible
+        if (Double.isInfinite(time))
+            return time;
+        time *= LiveSpeedWeighting.speedRatio(snapshot, mode, avgSpeedEnc, edgeState, reverse);
+        int edge = snapshot.baseEdge(edgeState);
+        return timeFactor * time + exposureFactor * snapshot.getSmoke(edge) * snapshot.getTime(mode, edge) * snapshot.getShare(edgeState, baseGraph);
     }
 
     @Override
-    public String getName() {
-        return NAME;
+    public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
+        return Math.round(super.calcEdgeMillis(edgeState, reverse) * LiveSpeedWeighting.speedRatio(snapshot, mode, avgSpeedEnc, edgeState, reverse));
     }
 
-    // to make the magnitude (range) of a number similar to another number.
-    static int countDigit(long n)
-    {
-        int count = 0;
-        while (n != 0) {
-            n = n / 10;
-            ++count;
-        }
-        return count - 1;
+    @Override
+    public String getName() {
+        return NAME;
     }
 }
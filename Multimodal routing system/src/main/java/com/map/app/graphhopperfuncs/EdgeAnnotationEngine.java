@@ -0,0 +1,104 @@
+package com.map.app.graphhopperfuncs;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Computes per node and per edge values of a data refresh into new arrays, which are
+ * then published through the {@link EdgeDataStore}. Node values (e.g. the interpolated
+ * aqi) are expensive and computed in chunks on a fork-join pool. Edge values only combine
+ * node values and edge attributes, they are computed in one pass over all edges.
+ * Nothing is written to the graph, so this runs concurrently with routing.
+ */
+public class EdgeAnnotationEngine {
+	public interface NodeFunction {
+		double calc(int node);
+	}
+
+	public interface EdgeFunction {
+		double calc(EdgeIteratorState edge);
+	}
+
+	private interface RangeBody {
+		void run(int from, int to);
+	}
+
+	private static final int CHUNK_SIZE = 1 << 14;
+	private final ForkJoinPool pool;
+
+	public EdgeAnnotationEngine(int parallelism) {
+		this.pool = new ForkJoinPool(Math.max(1, parallelism));
+	}
+
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	public double[] computeNodes(int nodes, NodeFunction function) {
+		double[] values = new double[nodes];
+		run(nodes, (from, to) -> {
+			for (int node = from; node < to; node++) {
+				values[node] = function.calc(node);
+			}
+		});
+		return values;
+	}
+
+	/**
+	 * Visits every edge exactly once with a single {@link AllEdgesIterator}, the function
+	 * gets the iterator itself and must not keep it. The value applies to both directions.
+	 */
+	public float[] computeEdges(Graph graph, EdgeFunction function) {
+		float[] values = new float[graph.getEdges()];
+		AllEdgesIterator edge = graph.getAllEdges();
+		while (edge.next()) {
+			values[edge.getEdge()] = (float) function.calc(edge);
+		}
+		return values;
+	}
+
+	/**
+	 * Recomputes the values of the given edges only, for refreshes that change a few edges.
+	 */
+	public void updateEdges(Graph graph, float[] values, IntArrayList edges, EdgeFunction function) {
+		for (IntCursor edge : edges) {
+			values[edge.value] = (float) function.calc(graph.getEdgeIteratorState(edge.value, Integer.MIN_VALUE));
+		}
+	}
+
+	private void run(int size, RangeBody body) {
+		if (size <= CHUNK_SIZE) {
+			body.run(0, size);
+			return;
+		}
+		pool.invoke(new RangeTask(0, size, body));
+	}
+
+	private static class RangeTask extends RecursiveAction {
+		private final int from;
+		private final int to;
+		private final RangeBody body;
+
+		RangeTask(int from, int to, RangeBody body) {
+			this.from = from;
+			this.to = to;
+			this.body = body;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= CHUNK_SIZE) {
+				body.run(from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new RangeTask(from, mid, body), new RangeTask(mid, to, body));
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.map.app.graphhopperfuncs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.map.app.service.TransportMode;
+
+/**
+ * The last published {@link EdgeDataSnapshot} in a memory mapped file next to the graph, so a
+ * restart routes with the last smoke, time and speed values before the first refresh.
+ * The header holds a magic number, the format, the number of modes and edges and the version,
+ * followed by the smoke array and the time and speed arrays of every mode as little endian floats.
+ */
+public class EdgeDataFile {
+	// "EDGD"
+	private static final int MAGIC = 0x45444744;
+	private static final int FORMAT = 1;
+	private static final int HEADER_BYTES = 4 * 4 + 8;
+
+	private final File file;
+
+	public EdgeDataFile(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * The stored snapshot, null if there is none or it was written for another graph or format.
+	 */
+	EdgeDataSnapshot read(int edges) {
+		if (!file.exists())
+			return null;
+		int modes = TransportMode.values().length;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() != size(modes, edges)) {
+				System.out.println("Edge data " + file + " is for another graph, starting with the defaults");
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT || buffer.getInt() != modes || buffer.getInt() != edges) {
+				System.out.println("Edge data " + file + " is for another graph, starting with the defaults");
+				return null;
+			}
+			long version = buffer.getLong();
+			FloatBuffer floats = buffer.asFloatBuffer();
+			float[] smoke = new float[edges];
+			floats.get(smoke);
+			float[][] times = new float[modes][edges];
+			float[][] speeds = new float[modes][edges];
+			for (int mode = 0; mode < modes; mode++) {
+				floats.get(times[mode]);
+				floats.get(speeds[mode]);
+			}
+			return new EdgeDataSnapshot(version, smoke, times, speeds);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Replaces the stored snapshot, a reader never sees a partly written file.
+	 */
+	void write(EdgeDataSnapshot snapshot) {
+		int modes = TransportMode.values().length;
+		int edges = snapshot.getEdges();
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(modes, edges));
+				buffer.order(ByteOrder.LITTLE_ENDIAN);
+				buffer.putInt(MAGIC).putInt(FORMAT).putInt(modes).putInt(edges).putLong(snapshot.getVersion());
+				FloatBuffer floats = buffer.asFloatBuffer();
+				floats.put(snapshot.getSmokeArray());
+				for (TransportMode mode : TransportMode.values()) {
+					floats.put(snapshot.getTimeArray(mode));
+					floats.put(snapshot.getSpeedArray(mode));
+				}
+				buffer.force();
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static long size(int modes, int edges) {
+		return HEADER_BYTES + 4L * edges * (1 + 2 * modes);
+	}
+}
@@ -0,0 +1,118 @@
+package com.map.app.graphhopperfuncs;
+
+import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import com.map.app.service.TransportMode;
+
+/**
+ * One published version of the dynamic edge attributes (smoke, travel time and live
+ * speed), indexed by edge id. The arrays are never modified after publishing, a
+ * refresh builds new arrays and unchanged ones are shared with the next version.
+ * A route keeps the snapshot it started with, so a refresh never changes the
+ * weights in the middle of a query.
+ */
+public class EdgeDataSnapshot {
+	private final long version;
+	private final float[] smoke;
+	private final float[][] time;
+	// NaN if HERE did not provide a speed, the imported speed of the encoder is used then
+	private final float[][] speed;
+	// derived from the arrays on first use
+	private volatile ExposureNorms exposureNorms;
+
+	EdgeDataSnapshot(long version, float[] smoke, float[][] time, float[][] speed) {
+		this.version = version;
+		this.smoke = smoke;
+		this.time = time;
+		this.speed = speed;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public int getEdges() {
+		return smoke.length;
+	}
+
+	public double getSmoke(int edge) {
+		return smoke[edge];
+	}
+
+	public double getTime(TransportMode mode, int edge) {
+		return time[mode.ordinal()][edge];
+	}
+
+	public double getSpeed(TransportMode mode, int edge) {
+		return speed[mode.ordinal()][edge];
+	}
+
+	/**
+	 * Copy of the live speeds of one mode, to be modified and published by the next refresh.
+	 */
+	public float[] copySpeeds(TransportMode mode) {
+		return speed[mode.ordinal()].clone();
+	}
+
+	/**
+	 * Copy of the travel times of one mode, for a refresh that only changes some edges.
+	 */
+	public float[] copyTimes(TransportMode mode) {
+		return time[mode.ordinal()].clone();
+	}
+
+	/**
+	 * The exposure constants of the balanced and greenest weightings for this version, computed once.
+	 */
+	public ExposureNorms getExposureNorms(Graph graph, EncodingManager encodingManager) {
+		ExposureNorms norms = exposureNorms;
+		if (norms == null) {
+			synchronized (this) {
+				norms = exposureNorms;
+				if (norms == null)
+					exposureNorms = norms = ExposureNorms.compute(graph, encodingManager, this);
+			}
+		}
+		return norms;
+	}
+
+	float[] getSmokeArray() {
+		return smoke;
+	}
+
+	float[] getTimeArray(TransportMode mode) {
+		return time[mode.ordinal()];
+	}
+
+	float[] getSpeedArray(TransportMode mode) {
+		return speed[mode.ordinal()];
+	}
+
+	/**
+	 * Part of its base edge an edge covers: 1 for base edges, the length ratio for the virtual edges of a
+	 * query graph. Smoke and time are stored per base edge, a base edge that is split by snapped points
+	 * is not counted more than once.
+	 */
+	public double getShare(EdgeIteratorState edge, Graph baseGraph) {
+		int id = edge.getEdge();
+		if (id < smoke.length)
+			return 1;
+		double baseDistance = baseGraph.getEdgeIteratorState(baseEdge(edge), Integer.MIN_VALUE).getDistance();
+		return baseDistance > 0 ? Math.min(1, edge.getDistance() / baseDistance) : 1;
+	}
+
+	/**
+	 * Edge id in the base graph, virtual edges of a query graph map to the edge they were split from.
+	 */
+	public int baseEdge(EdgeIteratorState edge) {
+		int id = edge.getEdge();
+		if (id < smoke.length)
+			return id;
+		// query graph explorers return an iterator over the virtual edges, detaching gives the edge itself
+		EdgeIteratorState state = edge instanceof VirtualEdgeIteratorState ? edge : edge.detach(false);
+		return GHUtility.getEdgeFromEdgeKey(((VirtualEdgeIteratorState) state).getOriginalEdgeKey());
+	}
+}
@@ -0,0 +1,132 @@
+package com.map.app.graphhopperfuncs;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.map.app.service.TransportMode;
+
+/**
+ * Holds the current {@link EdgeDataSnapshot}. Refreshes compute their arrays without
+ * any lock and publish them with an atomic pointer swap, routing requests only read
+ * the pointer once and are never blocked by a refresh. Versions are stored in the background,
+ * a refresh does not wait for the file.
+ */
+public class EdgeDataStore {
+	// request hint to route with a snapshot that was taken before the request
+	public static final String SNAPSHOT_HINT = "edge_data_snapshot";
+
+	private final AtomicReference<EdgeDataSnapshot> current = new AtomicReference<>();
+	private final double defaultSmoke;
+	private final double defaultTime;
+	// keeps the last version for the next start, null to keep it in memory only
+	private volatile EdgeDataFile file;
+	// the version that waits for the writer, a newer version replaces it and only the last one is written
+	private final AtomicReference<EdgeDataSnapshot> unwritten = new AtomicReference<>();
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "edge-data-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public EdgeDataStore(double defaultSmoke, double defaultTime) {
+		this.defaultSmoke = defaultSmoke;
+		this.defaultTime = defaultTime;
+	}
+
+	/**
+	 * Stores the published versions in the file, {@link #init(int)} starts with the stored version.
+	 */
+	public void setFile(EdgeDataFile file) {
+		this.file = file;
+	}
+
+	/**
+	 * Publishes the first version, the stored one of the last run if it fits the graph and else
+	 * the default smoke and time for every edge, unless there is a version already. Returns the
+	 * current version.
+	 */
+	public synchronized EdgeDataSnapshot init(int edges) {
+		EdgeDataSnapshot snapshot = current.get();
+		if (snapshot != null)
+			return snapshot;
+		EdgeDataFile file = this.file;
+		snapshot = file == null ? null : file.read(edges);
+		if (snapshot != null) {
+			System.out.println("Loaded edge data version " + snapshot.getVersion());
+			current.set(snapshot);
+			return snapshot;
+		}
+		int modes = TransportMode.values().length;
+		float[] smoke = new float[edges];
+		Arrays.fill(smoke, (float) defaultSmoke);
+		float[] time = new float[edges];
+		Arrays.fill(time, (float) defaultTime);
+		float[] speed = new float[edges];
+		Arrays.fill(speed, Float.NaN);
+		float[][] times = new float[modes][];
+		float[][] speeds = new float[modes][];
+		// the arrays are read-only after publishing, all modes can start with the same ones
+		Arrays.fill(times, time);
+		Arrays.fill(speeds, speed);
+		// the defaults are not stored
+		current.set(snapshot = new EdgeDataSnapshot(0, smoke, times, speeds));
+		return snapshot;
+	}
+
+	public EdgeDataSnapshot getCurrent() {
+		EdgeDataSnapshot snapshot = current.get();
+		if (snapshot == null)
+			throw new IllegalStateException("Edge data is not initialized");
+		return snapshot;
+	}
+
+	/**
+	 * Publishes a new version with the given smoke values, time and speed are shared with the current version.
+	 */
+	public synchronized EdgeDataSnapshot publishSmoke(float[] smoke) {
+		EdgeDataSnapshot old = getCurrent();
+		checkLength(old, smoke);
+		int modes = TransportMode.values().length;
+		float[][] times = new float[modes][];
+		float[][] speeds = new float[modes][];
+		for (TransportMode mode : TransportMode.values()) {
+			times[mode.ordinal()] = old.getTimeArray(mode);
+			speeds[mode.ordinal()] = old.getSpeedArray(mode);
+		}
+		return publish(new EdgeDataSnapshot(old.getVersion() + 1, smoke, times, speeds));
+	}
+
+	/**
+	 * Publishes a new version with the given speed and time per mode (indexed by mode ordinal), smoke is shared.
+	 */
+	public synchronized EdgeDataSnapshot publishTraffic(float[][] speeds, float[][] times) {
+		EdgeDataSnapshot old = getCurrent();
+		for (TransportMode mode : TransportMode.values()) {
+			checkLength(old, speeds[mode.ordinal()]);
+			checkLength(old, times[mode.ordinal()]);
+		}
+		return publish(new EdgeDataSnapshot(old.getVersion() + 1, old.getSmokeArray(), times.clone(), speeds.clone()));
+	}
+
+	private EdgeDataSnapshot publish(EdgeDataSnapshot snapshot) {
+		current.set(snapshot);
+		// a write is queued unless one is queued already, it takes the latest version when it runs
+		if (file != null && unwritten.getAndSet(snapshot) == null)
+			writer.execute(this::writeLatest);
+		return snapshot;
+	}
+
+	private void writeLatest() {
+		EdgeDataSnapshot snapshot = unwritten.getAndSet(null);
+		EdgeDataFile file = this.file;
+		if (snapshot != null && file != null)
+			file.write(snapshot);
+	}
+
+	private static void checkLength(EdgeDataSnapshot snapshot, float[] values) {
+		if (values.length != snapshot.getEdges())
+			throw new IllegalArgumentException("Expected values for " + snapshot.getEdges() + " edges but got " + values.length);
+	}
+}
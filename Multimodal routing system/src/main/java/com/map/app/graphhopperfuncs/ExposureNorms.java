@@ -0,0 +1,74 @@
+package com.map.app.graphhopperfuncs;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.storage.Graph;
+import com.map.app.service.TransportMode;
+
+/**
+ * Global exposure (smoke * time) constants of one edge data version, per transport mode.
+ * The {@link BalancedWeighting} converts exposure to seconds with the ratio of the total travel
+ * time to the total exposure of all accessible edges, so both terms have the same weight on an
+ * average road. The lowest exposure per meter of any edge gives the lower bound of the balanced
+ * and {@link GreenestWeighting} weights for the goal-directed algorithms.
+ */
+public class ExposureNorms {
+	private final double[] exposureToTime;
+	private final double[] minExposurePerMeter;
+
+	ExposureNorms(double[] exposureToTime, double[] minExposurePerMeter) {
+		this.exposureToTime = exposureToTime;
+		this.minExposurePerMeter = minExposurePerMeter;
+	}
+
+	/**
+	 * Seconds of the time term per unit of exposure.
+	 */
+	public double getExposureToTime(TransportMode mode) {
+		return exposureToTime[mode.ordinal()];
+	}
+
+	/**
+	 * Lowest exposure per meter of an accessible edge.
+	 */
+	public double getMinExposurePerMeter(TransportMode mode) {
+		return minExposurePerMeter[mode.ordinal()];
+	}
+
+	static ExposureNorms compute(Graph graph, EncodingManager encodingManager, EdgeDataSnapshot snapshot) {
+		int modes = TransportMode.values().length;
+		double[] exposureToTime = new double[modes];
+		double[] minExposurePerMeter = new double[modes];
+		for (TransportMode mode : TransportMode.values()) {
+			exposureToTime[mode.ordinal()] = 1;
+			if (!encodingManager.hasEncoder(mode.toString()))
+				continue;
+			FlagEncoder encoder = encodingManager.getEncoder(mode.toString());
+			FastestWeighting fastest = new FastestWeighting(encoder);
+			double totalTime = 0;
+			double totalExposure = 0;
+			double minExposure = Double.POSITIVE_INFINITY;
+			AllEdgesIterator iter = graph.getAllEdges();
+			while (iter.next()) {
+				// the time of one accessible direction, edges the mode can not use are never relaxed
+				double time = fastest.calcEdgeWeightWithAccess(iter, false);
+				if (Double.isInfinite(time))
+					time = fastest.calcEdgeWeightWithAccess(iter, true);
+				if (Double.isInfinite(time))
+					continue;
+				int edge = iter.getEdge();
+				double exposure = snapshot.getSmoke(edge) * snapshot.getTime(mode, edge);
+				totalTime += time;
+				totalExposure += exposure;
+				if (iter.getDistance() > 0)
+					minExposure = Math.min(minExposure, exposure / iter.getDistance());
+			}
+			if (totalExposure > 0)
+				exposureToTime[mode.ordinal()] = totalTime / totalExposure;
+			minExposurePerMeter[mode.ordinal()] = Double.isInfinite(minExposure) ? 0 : minExposure;
+		}
+		return new ExposureNorms(exposureToTime, minExposurePerMeter);
+	}
+}
@@ -6,12 +6,10 @@ import com.graphhopper.routing.weighting.AbstractWeighting;
 import com.graphhopper.routing.weighting.FastestWeighting;
 import com.graphhopper.routing.weighting.TurnCostProvider;
 import com.graphhopper.routing.weighting.custom.CustomWeightingHelper;
+import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIteratorState;
 import com.map.app.service.ModeInhalationRate;
-
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.Properties;
+import com.map.app.service.TransportMode;
 
 import static com.graphhopper.routing.weighting.TurnCostProvider.NO_TURN_COST_PROVIDER;
 
@@ -21,35 +19,33 @@ import static com.graphhopper.routing.weighting.TurnCostProvider.NO_TURN_COST_PR
  */
 public class GreenestWeighting extends AbstractWeighting {
 	private static final String NAME="greenest";
-	private final DecimalEncodedValue smokeEnc;
-	private final DecimalEncodedValue timeEnc;
+	private final EdgeDataSnapshot snapshot;
+	private final Graph baseGraph;
+	private final TransportMode mode;
 	private final double inhalationRate;
-	//final DecimalEncodedValue avgSpeedEnc;
+	// lower bound of the weight per meter, the lowest exposure per meter of this version
+	private final double minWeightPerMeter;
+	private final DecimalEncodedValue avgSpeedEnc;
 	//private static int avgCount=0;
 
 
-	protected GreenestWeighting(FlagEncoder encoder) {
-		this(encoder,NO_TURN_COST_PROVIDER);
+	protected GreenestWeighting(FlagEncoder encoder, Graph baseGraph, EdgeDataSnapshot snapshot, ExposureNorms norms) {
+		this(encoder,NO_TURN_COST_PROVIDER, baseGraph, snapshot, norms);
 	}
 
-	public GreenestWeighting(FlagEncoder flagEncoder, TurnCostProvider turnCostProvider) {
+	public GreenestWeighting(FlagEncoder flagEncoder, TurnCostProvider turnCostProvider, Graph baseGraph, EdgeDataSnapshot snapshot, ExposureNorms norms) {
 		super(flagEncoder, turnCostProvider);
-		smokeEnc = flagEncoder.getDecimalEncodedValue("smoke");
-		timeEnc = flagEncoder.getDecimalEncodedValue("time");
+		this.baseGraph = baseGraph;
+		this.snapshot = snapshot;
+		mode = TransportMode.valueOf(flagEncoder.toString());
 		inhalationRate = ModeInhalationRate.valueOf(flagEncoder.getTransportationMode().toString().toLowerCase()).getNumVal();
-		//    avgSpeedEnc=flagEncoder.getAverageSpeedEnc();
+		// no norms (and snapshot) for the profile checks before the graph is loaded
+		minWeightPerMeter = norms == null ? 0 : norms.getMinExposurePerMeter(mode) * inhalationRate;
+		avgSpeedEnc = flagEncoder.getAverageSpeedEnc();
 	}
 	@Override
 	public double getMinWeight(double distance) {
-		Properties prop=new Properties();
-		int defaultSmoke;
-		try (FileInputStream ip = new FileInputStream("config.properties")) {
-			prop.load(ip);
-			defaultSmoke = Integer.parseInt(prop.getProperty("default_smoke"));
-		} catch (IOException e) {
-			throw new RuntimeException("Config properties are not found. Aborting ...");
-		}
-		return defaultSmoke;
+		return distance * minWeightPerMeter;
 	}
 	@Override
 	public String getName() {
@@ -59,10 +55,17 @@ public class GreenestWeighting extends AbstractWeighting {
 
 	@Override
 	public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
-		double smoke = edgeState.get(smokeEnc);
-		double time = edgeState.get(timeEnc);
+		int edge = snapshot.baseEdge(edgeState);
+		double smoke = snapshot.getSmoke(edge);
+		double time = snapshot.getTime(mode, edge);
 //		System.out.println(inhalationRate);
-		return time * smoke * inhalationRate;
+		return time * smoke * snapshot.getShare(edgeState, baseGraph) * inhalationRate;
+	}
+
+	// the route time with the live speeds, the weight has them in the time of the snapshot
+	@Override
+	public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
+		return Math.round(super.calcEdgeMillis(edgeState, reverse) * LiveSpeedWeighting.speedRatio(snapshot, mode, avgSpeedEnc, edgeState, reverse));
 	}
 
 }
@@ -0,0 +1,190 @@
+package com.map.app.graphhopperfuncs;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.coll.MinHeapWithUpdate;
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+import com.map.app.service.ModeInhalationRate;
+import com.map.app.service.TransportMode;
+
+/**
+ * The edges that can be reached from a point within a time and an exposure budget. One Dijkstra
+ * settles the nodes by travel time and stops at the time budget, an edge is followed only while the
+ * inhaled dose of the fastest path stays within the exposure budget. Slower but less exposed paths are
+ * not searched, the reachable area can be a bit smaller than with a bicriteria search.
+ * The search state lives in primitive arrays that are reused by the next request.
+ */
+public class IsochroneRouter {
+	private final GraphHopper hopper;
+	private final ConcurrentLinkedQueue<SearchTree> pool = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pooled = new AtomicInteger();
+	private final int maxPooled;
+
+	/**
+	 * The edges of the query graph that are reachable from their start to their end within the budgets.
+	 */
+	public static class Result {
+		private final QueryGraph graph;
+		private final int[] edges;
+		private final int visitedNodes;
+
+		Result(QueryGraph graph, int[] edges, int visitedNodes) {
+			this.graph = graph;
+			this.edges = edges;
+			this.visitedNodes = visitedNodes;
+		}
+
+		public QueryGraph getGraph() {
+			return graph;
+		}
+
+		public int[] getEdges() {
+			return edges;
+		}
+
+		public int getVisitedNodes() {
+			return visitedNodes;
+		}
+	}
+
+	// node and edge states are valid for the round they were stamped with, so a tree is reused without clearing
+	private static class SearchTree {
+		int round;
+		int[] nodeRound = new int[0];
+		int[] settledRound = new int[0];
+		int[] edgeRound = new int[0];
+		double[] time = new double[0];
+		double[] exposure = new double[0];
+		// the base edge the fastest path reaches the node with, -1 at the origin
+		int[] lastEdge = new int[0];
+		MinHeapWithUpdate heap;
+		int heapCapacity;
+		final IntArrayList edges = new IntArrayList();
+
+		void reset(int nodes, int edgeCount) {
+			if (nodeRound.length < nodes) {
+				nodeRound = new int[nodes];
+				settledRound = new int[nodes];
+				time = new double[nodes];
+				exposure = new double[nodes];
+				lastEdge = new int[nodes];
+			}
+			if (edgeRound.length < edgeCount)
+				edgeRound = new int[edgeCount];
+			if (heap == null || heapCapacity < nodes) {
+				heap = new MinHeapWithUpdate(nodes);
+				heapCapacity = nodes;
+			}
+			heap.clear();
+			edges.clear();
+			// 0 is the round of new arrays, stamps of old rounds never match
+			if (++round == Integer.MAX_VALUE) {
+				round = 1;
+				Arrays.fill(nodeRound, 0);
+				Arrays.fill(settledRound, 0);
+				Arrays.fill(edgeRound, 0);
+			}
+		}
+	}
+
+	public IsochroneRouter(GraphHopper hopper, int maxPooled) {
+		this.hopper = hopper;
+		this.maxPooled = maxPooled;
+	}
+
+	/**
+	 * Searches from the point with the time weighting of the profile (without turn costs). The time
+	 * budget is in ms, the exposure budget is the inhaled dose of the mode before the 10^3 scaling of
+	 * {@link RouteMetrics#getInhaledDose}, the path edges count by the rule of RouteMetrics.
+	 */
+	public Result route(GHPoint from, String profileName, TransportMode mode, PMap hints, double maxTime, double maxExposure) {
+		Profile profile = hopper.getProfile(profileName);
+		if (profile == null)
+			throw new IllegalArgumentException("Unknown profile " + profileName);
+		EdgeDataSnapshot snapshot = hints.getObject(EdgeDataStore.SNAPSHOT_HINT, null);
+		if (snapshot == null)
+			throw new IllegalArgumentException("The isochrone needs the edge data snapshot hint");
+		Weighting weighting = hopper.createWeighting(profile, hints, true);
+		DefaultSnapFilter snapFilter = new DefaultSnapFilter(weighting, hopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName)));
+		Snap snap = hopper.getLocationIndex().findClosest(from.lat, from.lon, snapFilter);
+		if (!snap.isValid())
+			throw new IllegalArgumentException("Cannot find point " + from);
+		QueryGraph queryGraph = QueryGraph.create(hopper.getGraphHopperStorage(), snap);
+
+		SearchTree tree = pool.poll();
+		if (tree == null)
+			tree = new SearchTree();
+		else
+			pooled.decrementAndGet();
+		try {
+			return search(queryGraph, weighting, snapshot, mode, snap.getClosestNode(), maxTime, maxExposure, tree);
+		} finally {
+			if (pooled.incrementAndGet() <= maxPooled)
+				pool.offer(tree);
+			else
+				pooled.decrementAndGet();
+		}
+	}
+
+	private Result search(QueryGraph graph, Weighting weighting, EdgeDataSnapshot snapshot, TransportMode mode, int from,
+						  double maxTime, double maxExposure, SearchTree tree) {
+		double inhalationRate = ModeInhalationRate.valueOf(mode.toString()).getNumVal();
+		tree.reset(graph.getNodes(), graph.getEdges());
+		int round = tree.round;
+		EdgeExplorer explorer = graph.createEdgeExplorer();
+		tree.nodeRound[from] = round;
+		tree.time[from] = 0;
+		tree.exposure[from] = 0;
+		tree.lastEdge[from] = -1;
+		tree.heap.push(from, 0);
+		int visitedNodes = 0;
+		while (!tree.heap.isEmpty()) {
+			int node = tree.heap.poll();
+			tree.settledRound[node] = round;
+			visitedNodes++;
+			EdgeIterator iter = explorer.setBaseNode(node);
+			while (iter.next()) {
+				int adj = iter.getAdjNode();
+				if (tree.settledRound[adj] == round)
+					continue;
+				if (Double.isInfinite(weighting.calcEdgeWeightWithAccess(iter, false)))
+					continue;
+				int edge = snapshot.baseEdge(iter);
+				double time = tree.time[node] + weighting.calcEdgeMillis(iter, false);
+				double exposure = tree.exposure[node] + RouteMetrics.edgeExposure(snapshot, mode, tree.lastEdge[node], edge) * inhalationRate;
+				if (time > maxTime || exposure > maxExposure)
+					continue;
+				if (tree.edgeRound[iter.getEdge()] != round) {
+					tree.edgeRound[iter.getEdge()] = round;
+					tree.edges.add(iter.getEdge());
+				}
+				if (tree.nodeRound[adj] != round) {
+					tree.nodeRound[adj] = round;
+					tree.time[adj] = time;
+					tree.exposure[adj] = exposure;
+					tree.lastEdge[adj] = edge;
+					tree.heap.push(adj, (float) time);
+				} else if (time < tree.time[adj]) {
+					tree.time[adj] = time;
+					tree.exposure[adj] = exposure;
+					tree.lastEdge[adj] = edge;
+					tree.heap.update(adj, (float) time);
+				}
+			}
+		}
+		return new Result(graph, tree.edges.toArray(), visitedNodes);
+	}
+}
@@ -0,0 +1,82 @@
+package com.map.app.graphhopperfuncs;
+
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.weighting.AbstractAdjustedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.util.EdgeIteratorState;
+import com.map.app.service.TransportMode;
+
+/**
+ * Applies the live HERE speeds of an {@link EdgeDataSnapshot} to a weighting. The time of the
+ * wrapped weighting is scaled with imported speed / live speed, and so is its weight if it is a
+ * travel time, which is exact for fastest (and priority) weightings. Edges without a live speed
+ * keep the weight and time of the wrapped weighting.
+ */
+public class LiveSpeedWeighting extends AbstractAdjustedWeighting {
+	private final EdgeDataSnapshot snapshot;
+	private final TransportMode mode;
+	private final DecimalEncodedValue avgSpeedEnc;
+	private final boolean timeWeight;
+	// a live speed can be above the max speed of the encoder, up to the max of the speed encoding
+	private final double minWeightFactor;
+
+	public LiveSpeedWeighting(Weighting superWeighting, EdgeDataSnapshot snapshot) {
+		this(superWeighting, snapshot, true);
+	}
+
+	/**
+	 * @param timeWeight false for a weighting whose weight does not depend on the speed, e.g. shortest,
+	 *                   only its time is scaled
+	 */
+	public LiveSpeedWeighting(Weighting superWeighting, EdgeDataSnapshot snapshot, boolean timeWeight) {
+		super(superWeighting);
+		this.snapshot = snapshot;
+		this.mode = TransportMode.valueOf(superWeighting.getFlagEncoder().toString());
+		this.avgSpeedEnc = superWeighting.getFlagEncoder().getAverageSpeedEnc();
+		this.timeWeight = timeWeight;
+		this.minWeightFactor = timeWeight ? minTimeFactor(superWeighting.getFlagEncoder().getMaxSpeed(), avgSpeedEnc) : 1;
+	}
+
+	@Override
+	public double getMinWeight(double distance) {
+		return superWeighting.getMinWeight(distance) * minWeightFactor;
+	}
+
+	@Override
+	public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
+		double weight = superWeighting.calcEdgeWeight(edgeState, reverse);
+		return timeWeight ? weight * speedRatio(snapshot, mode, avgSpeedEnc, edgeState, reverse) : weight;
+	}
+
+	@Override
+	public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
+		return Math.round(superWeighting.calcEdgeMillis(edgeState, reverse) * speedRatio(snapshot, mode, avgSpeedEnc, edgeState, reverse));
+	}
+
+	/**
+	 * Imported speed / live speed of the edge, the factor of its travel time. 1 without a live speed.
+	 */
+	static double speedRatio(EdgeDataSnapshot snapshot, TransportMode mode, DecimalEncodedValue avgSpeedEnc,
+							 EdgeIteratorState edgeState, boolean reverse) {
+		double liveSpeed = snapshot.getSpeed(mode, snapshot.baseEdge(edgeState));
+		if (Double.isNaN(liveSpeed) || liveSpeed <= 0)
+			return 1;
+		double importedSpeed = reverse ? edgeState.getReverse(avgSpeedEnc) : edgeState.get(avgSpeedEnc);
+		if (importedSpeed <= 0)
+			return 1;
+		return importedSpeed / liveSpeed;
+	}
+
+	/**
+	 * The factor of a min weight that assumes the max speed of the encoder, so that it stays a lower
+	 * bound when the live speeds reach the max of the speed encoding.
+	 */
+	static double minTimeFactor(double encoderMaxSpeed, DecimalEncodedValue avgSpeedEnc) {
+		return Math.min(1, encoderMaxSpeed / avgSpeedEnc.getMaxDecimal());
+	}
+
+	@Override
+	public String getName() {
+		return superWeighting.getName();
+	}
+}
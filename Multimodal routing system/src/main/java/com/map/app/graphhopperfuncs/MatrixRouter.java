@@ -0,0 +1,209 @@
+package com.map.app.graphhopperfuncs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+import com.map.app.service.TransportMode;
+
+/**
+ * Travel time, distance, concentration and exposure from every source to every target. All
+ * points are snapped into one query graph and every source runs one Dijkstra that stops once
+ * all targets are settled, instead of a point to point query per pair. The paths are the best
+ * ones for the weight of the profile without turn costs, every cell uses the edge data snapshot
+ * of the hints.
+ */
+public class MatrixRouter {
+	private final GraphHopper hopper;
+
+	/**
+	 * The values of the matrix indexed by [source][target], NaN if a point was not found or a
+	 * target is not reachable. Time in ms, distance in m, concentration and exposure summed up
+	 * over the edges like {@link RouteMetrics}, every base edge of the path counts whole.
+	 */
+	public static class Result {
+		private final double[][] times;
+		private final double[][] distances;
+		private final double[][] concentrations;
+		private final double[][] exposures;
+		private long visitedNodes;
+
+		Result(int sources, int targets) {
+			times = filled(sources, targets);
+			distances = filled(sources, targets);
+			concentrations = filled(sources, targets);
+			exposures = filled(sources, targets);
+		}
+
+		private static double[][] filled(int sources, int targets) {
+			double[][] values = new double[sources][targets];
+			for (double[] row : values) {
+				Arrays.fill(row, Double.NaN);
+			}
+			return values;
+		}
+
+		public double[][] getTimes() {
+			return times;
+		}
+
+		public double[][] getDistances() {
+			return distances;
+		}
+
+		public double[][] getConcentrations() {
+			return concentrations;
+		}
+
+		public double[][] getExposures() {
+			return exposures;
+		}
+
+		public long getVisitedNodes() {
+			return visitedNodes;
+		}
+	}
+
+	private static class Entry {
+		final int node;
+		final double weight;
+		final double time;
+		final double distance;
+		final double concentration;
+		final double exposure;
+		// the base edge that reached the node, -1 at the source
+		final int edge;
+
+		Entry(int node, double weight, double time, double distance, double concentration, double exposure, int edge) {
+			this.node = node;
+			this.edge = edge;
+			this.weight = weight;
+			this.time = time;
+			this.distance = distance;
+			this.concentration = concentration;
+			this.exposure = exposure;
+		}
+	}
+
+	public MatrixRouter(GraphHopper hopper) {
+		this.hopper = hopper;
+	}
+
+	public Result route(List<GHPoint> sources, List<GHPoint> targets, String profileName, TransportMode mode, PMap hints) {
+		Profile profile = hopper.getProfile(profileName);
+		if (profile == null)
+			throw new IllegalArgumentException("Unknown profile " + profileName);
+		EdgeDataSnapshot snapshot = hints.getObject(EdgeDataStore.SNAPSHOT_HINT, null);
+		if (snapshot == null)
+			throw new IllegalArgumentException("The matrix needs the edge data snapshot hint");
+		Weighting weighting = hopper.createWeighting(profile, hints, true);
+		DefaultSnapFilter snapFilter = new DefaultSnapFilter(weighting, hopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName)));
+		List<Snap> snaps = new ArrayList<>();
+		Snap[] sourceSnaps = snap(sources, snapFilter, snaps);
+		Snap[] targetSnaps = snap(targets, snapFilter, snaps);
+		QueryGraph queryGraph = QueryGraph.create(hopper.getGraphHopperStorage(), snaps);
+		// the query graph has moved the snaps to their virtual nodes
+		int[] sourceNodes = closestNodes(sourceSnaps);
+		int[] targetNodes = closestNodes(targetSnaps);
+
+		Result result = new Result(sources.size(), targets.size());
+		IntHashSet targetSet = new IntHashSet();
+		for (int node : targetNodes) {
+			if (node >= 0)
+				targetSet.add(node);
+		}
+		EdgeExplorer explorer = queryGraph.createEdgeExplorer();
+		for (int s = 0; s < sourceNodes.length; s++) {
+			if (sourceNodes[s] < 0)
+				continue;
+			IntObjectHashMap<Entry> settled = search(explorer, weighting, snapshot, mode, sourceNodes[s], targetSet, result);
+			for (int t = 0; t < targetNodes.length; t++) {
+				Entry entry = targetNodes[t] < 0 ? null : settled.get(targetNodes[t]);
+				if (entry == null)
+					continue;
+				result.times[s][t] = entry.time;
+				result.distances[s][t] = entry.distance;
+				result.concentrations[s][t] = entry.concentration;
+				result.exposures[s][t] = entry.exposure;
+			}
+		}
+		return result;
+	}
+
+	// null for a point that is not found
+	private Snap[] snap(List<GHPoint> points, DefaultSnapFilter snapFilter, List<Snap> snaps) {
+		Snap[] result = new Snap[points.size()];
+		for (int i = 0; i < result.length; i++) {
+			GHPoint point = points.get(i);
+			Snap snap = hopper.getLocationIndex().findClosest(point.lat, point.lon, snapFilter);
+			if (snap.isValid()) {
+				result[i] = snap;
+				snaps.add(snap);
+			}
+		}
+		return result;
+	}
+
+	// -1 for a point that is not found
+	private static int[] closestNodes(Snap[] snaps) {
+		int[] nodes = new int[snaps.length];
+		for (int i = 0; i < snaps.length; i++) {
+			nodes[i] = snaps[i] == null ? -1 : snaps[i].getClosestNode();
+		}
+		return nodes;
+	}
+
+	private IntObjectHashMap<Entry> search(EdgeExplorer explorer, Weighting weighting, EdgeDataSnapshot snapshot,
+										   TransportMode mode, int from, IntHashSet targets, Result result) {
+		IntObjectHashMap<Entry> best = new IntObjectHashMap<>();
+		IntObjectHashMap<Entry> settled = new IntObjectHashMap<>();
+		PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparingDouble(e -> e.weight));
+		Entry start = new Entry(from, 0, 0, 0, 0, 0, -1);
+		best.put(from, start);
+		queue.add(start);
+		int settledTargets = 0;
+		while (!queue.isEmpty() && settledTargets < targets.size()) {
+			Entry entry = queue.poll();
+			if (settled.containsKey(entry.node) || best.get(entry.node) != entry)
+				continue;
+			settled.put(entry.node, entry);
+			result.visitedNodes++;
+			if (targets.contains(entry.node))
+				settledTargets++;
+			EdgeIterator iter = explorer.setBaseNode(entry.node);
+			while (iter.next()) {
+				if (settled.containsKey(iter.getAdjNode()))
+					continue;
+				double weight = weighting.calcEdgeWeightWithAccess(iter, false);
+				if (Double.isInfinite(weight))
+					continue;
+				Entry current = best.get(iter.getAdjNode());
+				if (current != null && current.weight <= entry.weight + weight)
+					continue;
+				int edge = snapshot.baseEdge(iter);
+				// the scores of the route summary for the same path
+				Entry next = new Entry(iter.getAdjNode(), entry.weight + weight, entry.time + weighting.calcEdgeMillis(iter, false),
+						entry.distance + iter.getDistance(), entry.concentration + RouteMetrics.edgeConcentration(snapshot, entry.edge, edge),
+						entry.exposure + RouteMetrics.edgeExposure(snapshot, mode, entry.edge, edge), edge);
+				best.put(next.node, next);
+				queue.add(next);
+			}
+		}
+		return settled;
+	}
+}
@@ -1,15 +1,241 @@
 package com.map.app.graphhopperfuncs;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.LMProfile;
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.Router;
+import com.graphhopper.routing.RouterConfig;
 import com.graphhopper.routing.WeightingFactory;
+import com.graphhopper.routing.lm.LMConfig;
+import com.graphhopper.routing.lm.LandmarkStorage;
+import com.graphhopper.routing.lm.PrepareLandmarks;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.TranslationMap;
+import com.graphhopper.util.details.PathDetailsBuilderFactory;
+import com.map.app.service.RoutingConfig;
+import com.map.app.service.RoutingConfigStore;
 
 /**
  * @author Siftee
  */
 public class MyGraphHopper extends GraphHopper {
 	//necessary to make a new instance of graphhopper to assign custom weighting options
-	
+	// smoke, travel time and live speed are kept outside of the edge flags, see EdgeDataStore
+	private final EdgeDataStore edgeDataStore;
+	private final RoutingConfigStore configStore;
+	private List<String> landmarkProfiles = Collections.emptyList();
+	private volatile Landmarks landmarks = new Landmarks(-1, null, Collections.emptyMap());
+	private final AtomicBoolean preparingLandmarks = new AtomicBoolean();
+	private final ExecutorService landmarkExecutor = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "landmarks");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Landmarks prepared with the weights of one edge data version and config. They are exact for
+	 * the routes of this version only, the weights of the next one can be lower.
+	 */
+	private static class Landmarks {
+		final long version;
+		final RoutingConfig config;
+		final Map<String, LandmarkStorage> storages;
+
+		Landmarks(long version, RoutingConfig config, Map<String, LandmarkStorage> storages) {
+			this.version = version;
+			this.config = config;
+			this.storages = storages;
+		}
+	}
+
+	public MyGraphHopper(RoutingConfigStore configStore) {
+		RoutingConfig config = configStore.getCurrent();
+		this.configStore = configStore;
+		this.edgeDataStore = new EdgeDataStore(config.getDefaultSmoke(), config.getDefaultTime());
+	}
+
+	public EdgeDataStore getEdgeDataStore() {
+		return edgeDataStore;
+	}
+
+	/**
+	 * Loads the stored graph and the edge data of the last run. The OSM file is only imported when
+	 * there is no stored graph, the OSM file changed, the stored graph does not fit the encoders and
+	 * profiles or reimport is set. Importing removes the stored edge data with the graph.
+	 */
+	public void loadOrImport(boolean reimport) {
+		File marker = new File(getGraphHopperLocation(), "osm_file");
+		File configMarker = new File(getGraphHopperLocation(), "graph_config");
+		String osmFile = describe(new File(getOSMFile()));
+		Properties graphConfig = describeConfig();
+		if (reimport || !osmFile.equals(readMarker(marker)))
+			clean();
+		else if (isConfigMismatch(readConfig(configMarker), graphConfig)) {
+			System.out.println("The stored graph does not fit the encoders and profiles of the config, importing again");
+			clean();
+		}
+		edgeDataStore.setFile(new EdgeDataFile(new File(getGraphHopperLocation(), "edge_data")));
+		importOrLoad();
+		try {
+			Files.write(marker.toPath(), osmFile.getBytes(StandardCharsets.UTF_8));
+			try (OutputStream out = new FileOutputStream(configMarker)) {
+				graphConfig.store(out, null);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	// what GraphHopper 4 checks when it loads a stored graph: the encoders, encoded values and CH and LM profile versions
+	private Properties describeConfig() {
+		Properties config = new Properties();
+		config.setProperty("graph.flag_encoders", getEncodingManager().toFlagEncodersAsString());
+		config.setProperty("graph.encoded_values", getEncodingManager().toEncodedValuesAsString());
+		for (CHProfile chProfile : getCHPreparationHandler().getCHProfiles())
+			config.setProperty("graph.profiles.ch." + chProfile.getProfile() + ".version", String.valueOf(getProfile(chProfile.getProfile()).getVersion()));
+		for (LMProfile lmProfile : getLMPreparationHandler().getLMProfiles())
+			config.setProperty("graph.profiles.lm." + lmProfile.getProfile() + ".version", String.valueOf(getProfile(lmProfile.getProfile()).getVersion()));
+		return config;
+	}
+
+	// a CH or LM profile that is not stored yet is prepared for the stored graph, a changed one is not
+	private static boolean isConfigMismatch(Properties stored, Properties current) {
+		if (stored == null)
+			return true;
+		for (String key : current.stringPropertyNames()) {
+			String value = stored.getProperty(key);
+			if (value == null ? !key.startsWith("graph.profiles.") : !value.equals(current.getProperty(key)))
+				return true;
+		}
+		return false;
+	}
+
+	private static Properties readConfig(File configMarker) {
+		if (!configMarker.exists())
+			return null;
+		Properties config = new Properties();
+		try (InputStream in = new FileInputStream(configMarker)) {
+			config.load(in);
+			return config;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	// path, size and modification time of the OSM file the graph was imported from
+	private static String describe(File osmFile) {
+		return osmFile.getAbsolutePath() + "," + osmFile.length() + "," + osmFile.lastModified();
+	}
+
+	private static String readMarker(File marker) {
+		try {
+			return marker.exists() ? new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8) : null;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Profiles that are routed with landmarks. The landmarks are prepared in the background for
+	 * every new edge data version, until they are ready the routes are calculated without them.
+	 */
+	public void setLandmarkProfiles(List<String> profiles) {
+		this.landmarkProfiles = new ArrayList<>(profiles);
+	}
+
 	@Override
 	protected WeightingFactory createWeightingFactory() {
-		return new MyWeightingFactory(this.getGraphHopperStorage(), this.getEncodingManager());
+		return new MyWeightingFactory(this.getGraphHopperStorage(), this.getEncodingManager(), edgeDataStore, configStore);
+	}
+
+	@Override
+	protected Router doCreateRouter(GraphHopperStorage ghStorage, LocationIndex locationIndex, Map<String, Profile> profilesByName,
+									PathDetailsBuilderFactory pathBuilderFactory, TranslationMap trMap, RouterConfig routerConfig,
+									WeightingFactory weightingFactory, Map<String, RoutingCHGraph> chGraphs, Map<String, LandmarkStorage> landmarks) {
+		// a router is created for every request, it keeps the landmarks it was created with
+		Landmarks current = this.landmarks;
+		return new Router(ghStorage, locationIndex, profilesByName, pathBuilderFactory, trMap, routerConfig, weightingFactory, chGraphs, current.storages) {
+			@Override
+			public GHResponse route(GHRequest request) {
+				EdgeDataSnapshot snapshot = request.getHints().getObject(EdgeDataStore.SNAPSHOT_HINT, null);
+				if (snapshot == null || snapshot.getVersion() != current.version || current.config != configStore.getCurrent()) {
+					request.putHint(Parameters.Landmark.DISABLE, true);
+					prepareLandmarks();
+				} else if (!current.storages.containsKey(request.getProfile())) {
+					request.putHint(Parameters.Landmark.DISABLE, true);
+				}
+				return super.route(request);
+			}
+		};
+	}
+
+	/**
+	 * Prepares the landmarks of the current edge data version in the background, unless they are prepared already.
+	 */
+	public void prepareLandmarks() {
+		if (landmarkProfiles.isEmpty() || !preparingLandmarks.compareAndSet(false, true))
+			return;
+		landmarkExecutor.execute(() -> {
+			try {
+				while (true) {
+					EdgeDataSnapshot snapshot = edgeDataStore.getCurrent();
+					RoutingConfig config = configStore.getCurrent();
+					if (snapshot.getVersion() == landmarks.version && config == landmarks.config)
+						return;
+					landmarks = prepareLandmarks(snapshot, config);
+				}
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			} finally {
+				preparingLandmarks.set(false);
+			}
+		});
+	}
+
+	private Landmarks prepareLandmarks(EdgeDataSnapshot snapshot, RoutingConfig config) {
+		long start = System.currentTimeMillis();
+		WeightingFactory weightingFactory = createWeightingFactory();
+		Map<String, LandmarkStorage> storages = new HashMap<>();
+		for (String name : landmarkProfiles) {
+			Profile profile = getProfile(name);
+			if (profile == null)
+				throw new IllegalArgumentException("Unknown landmark profile " + name);
+			PMap hints = new PMap().putObject(EdgeDataStore.SNAPSHOT_HINT, snapshot);
+			// the landmarks are node based, the turn costs are only added by the query
+			LMConfig lmConfig = new LMConfig(name, weightingFactory.createWeighting(profile, hints, true));
+			PrepareLandmarks prepare = new PrepareLandmarks(new RAMDirectory(), getGraphHopperStorage(), lmConfig, getLMPreparationHandler().getLandmarks());
+			prepare.doWork();
+			storages.put(name, prepare.getLandmarkStorage());
+		}
+		System.out.println("Prepared landmarks of edge data version " + snapshot.getVersion() + " for " + storages.size()
+				+ " profiles in " + (System.currentTimeMillis() - start) + " ms");
+		return new Landmarks(snapshot.getVersion(), config, storages);
 	}
-}
\ No newline at end of file
+}
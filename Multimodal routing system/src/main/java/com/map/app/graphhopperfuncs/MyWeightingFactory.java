@@ -23,19 +23,21 @@ import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.util.CustomModel;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.Parameters;
-
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.Properties;
+import com.map.app.service.RoutingConfig;
+import com.map.app.service.RoutingConfigStore;
 
 
 //custom weighting factory with "greenest" and "balanced" option
 public class MyWeightingFactory implements WeightingFactory{
 	private final GraphHopperStorage ghStorage;
     private final EncodingManager encodingManager;
-    public MyWeightingFactory(GraphHopperStorage ghStorage, EncodingManager encodingManager) {
+    private final EdgeDataStore edgeDataStore;
+    private final RoutingConfigStore configStore;
+    public MyWeightingFactory(GraphHopperStorage ghStorage, EncodingManager encodingManager, EdgeDataStore edgeDataStore, RoutingConfigStore configStore) {
         this.ghStorage = ghStorage;
         this.encodingManager = encodingManager;
+        this.edgeDataStore = edgeDataStore;
+        this.configStore = configStore;
     }
 	@Override
 	public Weighting createWeighting(Profile profile, PMap requestHints, boolean disableTurnCosts) {
@@ -47,20 +49,19 @@ public class MyWeightingFactory implements WeightingFactory{
         PMap hints = new PMap();
         hints.putAll(profile.getHints());
         hints.putAll(requestHints);
-        Properties prop=new Properties();
-        int getUTurnCosts;
-        try (FileInputStream ip = new FileInputStream("config.properties")) {
-            prop.load(ip);
-            getUTurnCosts = Integer.parseInt(prop.getProperty("u_turn_costs"));
-        } catch (IOException e) {
-            throw new RuntimeException("Config properties are not found. Aborting ...");
-        }
+        RoutingConfig config = configStore.getCurrent();
         FlagEncoder encoder = encodingManager.getEncoder(profile.getVehicle());
+        // the whole route is calculated with the edge data version the request started with. The first
+        // weightings are created by the import (subnetworks, CH, LM), the default edge data starts with them.
+        // GraphHopper also checks the profiles before the graph is loaded, these weightings are never used
+        EdgeDataSnapshot snapshot = requestHints.getObject(EdgeDataStore.SNAPSHOT_HINT, null);
+        if (snapshot == null && ghStorage.getEdges() > 0)
+            snapshot = edgeDataStore.init(ghStorage.getEdges());
         TurnCostProvider turnCostProvider;
         if (profile.isTurnCosts() && !disableTurnCosts) {
             if (!encoder.supportsTurnCosts())
                 throw new IllegalArgumentException("Encoder " + encoder + " does not support turn costs");
-            int uTurnCosts = hints.getInt(Parameters.Routing.U_TURN_COSTS, getUTurnCosts);
+            int uTurnCosts = hints.getInt(Parameters.Routing.U_TURN_COSTS, config.getUTurnCosts());
             turnCostProvider = new DefaultTurnCostProvider(encoder, ghStorage.getTurnCostStorage(), uTurnCosts);
         } else {
             turnCostProvider = NO_TURN_COST_PROVIDER;
@@ -78,14 +79,15 @@ public class MyWeightingFactory implements WeightingFactory{
             CustomProfile customProfile = (CustomProfile) profile;
             queryCustomModel = queryCustomModel == null ?
                     customProfile.getCustomModel() : CustomModel.merge(customProfile.getCustomModel(), queryCustomModel);
-            weighting = CustomModelParser.createWeighting(encoder, encodingManager, turnCostProvider, queryCustomModel);
+            weighting = new LiveSpeedWeighting(CustomModelParser.createWeighting(encoder, encodingManager, turnCostProvider, queryCustomModel), snapshot);
         } else if ("shortest".equalsIgnoreCase(weightingStr)) {
-            weighting = new ShortestWeighting(encoder, turnCostProvider);
+            // the weight is the distance, only the time has the live speeds
+            weighting = new LiveSpeedWeighting(new ShortestWeighting(encoder, turnCostProvider), snapshot, false);
         } else if ("fastest".equalsIgnoreCase(weightingStr)) {
             if (encoder.supports(PriorityWeighting.class))
-                weighting = new PriorityWeighting(encoder, hints, turnCostProvider);
+                weighting = new LiveSpeedWeighting(new PriorityWeighting(encoder, hints, turnCostProvider), snapshot);
             else
-                weighting = new FastestWeighting(encoder, hints, turnCostProvider);
+                weighting = new LiveSpeedWeighting(new FastestWeighting(encoder, hints, turnCostProvider), snapshot);
         } else if ("curvature".equalsIgnoreCase(weightingStr)) {
             if (encoder.supports(CurvatureWeighting.class))
                 weighting = new CurvatureWeighting(encoder, hints, turnCostProvider);
@@ -95,12 +97,14 @@ public class MyWeightingFactory implements WeightingFactory{
         }
         //"balanced"
         else if("balanced".equalsIgnoreCase(weightingStr)){
-        	weighting = new BalancedWeighting(encoder, hints, turnCostProvider);
+        	ExposureNorms norms = snapshot == null ? null : snapshot.getExposureNorms(ghStorage, encodingManager);
+        	weighting = new BalancedWeighting(encoder, hints, turnCostProvider, ghStorage, snapshot, norms, config);
         }
         //"greenest"
         else if("greenest".equalsIgnoreCase(weightingStr))
         {
-        	weighting=new GreenestWeighting(encoder,turnCostProvider);
+        	ExposureNorms norms = snapshot == null ? null : snapshot.getExposureNorms(ghStorage, encodingManager);
+        	weighting=new GreenestWeighting(encoder,turnCostProvider, ghStorage, snapshot, norms);
         }
 
         if (weighting == null)
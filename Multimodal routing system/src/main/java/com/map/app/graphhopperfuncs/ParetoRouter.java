@@ -0,0 +1,216 @@
+package com.map.app.graphhopperfuncs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.PathMerger;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.GHPoint;
+
+/**
+ * Routes between two points with two criteria at once, travel time of a time profile and
+ * exposure (the weight of a greenest profile), and returns the routes of the Pareto frontier:
+ * no other route is faster and less exposed at the same time.
+ * The search keeps several labels per node (Martins' algorithm). Labels that are within
+ * (1 + epsilon) of another label in both criteria are dropped and a node keeps at most
+ * maxLabels labels, so the frontier is an approximation with a bounded number of labels.
+ */
+public class ParetoRouter {
+	private final GraphHopper hopper;
+	private final double epsilon;
+	private final int maxLabels;
+	private int visitedNodes;
+
+	private static class Label {
+		final int node;
+		// incoming edge, -1 for the start
+		final int edge;
+		final double time;
+		final double exposure;
+		final double distance;
+		final Label parent;
+		boolean dominated;
+
+		Label(int node, int edge, double time, double exposure, double distance, Label parent) {
+			this.node = node;
+			this.edge = edge;
+			this.time = time;
+			this.exposure = exposure;
+			this.distance = distance;
+			this.parent = parent;
+		}
+	}
+
+	public ParetoRouter(GraphHopper hopper, double epsilon, int maxLabels) {
+		this.hopper = hopper;
+		this.epsilon = epsilon;
+		this.maxLabels = maxLabels;
+	}
+
+	/**
+	 * The routes of the frontier ordered from the fastest to the least exposed, at most maxRoutes
+	 * evenly spread over the frontier. The hints are used for both weightings.
+	 */
+	public List<ResponsePath> route(GHPoint from, GHPoint to, String timeProfile, String exposureProfile, PMap hints, int maxRoutes) {
+		Profile profile = hopper.getProfile(timeProfile);
+		if (profile == null || hopper.getProfile(exposureProfile) == null)
+			throw new IllegalArgumentException("Unknown profile " + (profile == null ? timeProfile : exposureProfile));
+		Weighting timeWeighting = hopper.createWeighting(profile, hints);
+		Weighting exposureWeighting = hopper.createWeighting(hopper.getProfile(exposureProfile), hints);
+		DefaultSnapFilter snapFilter = new DefaultSnapFilter(timeWeighting, hopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(timeProfile)));
+		Snap fromSnap = snap(from, snapFilter);
+		Snap toSnap = snap(to, snapFilter);
+		QueryGraph queryGraph = QueryGraph.create(hopper.getGraphHopperStorage(), fromSnap, toSnap);
+
+		List<Label> frontier = search(queryGraph, fromSnap.getClosestNode(), toSnap.getClosestNode(), timeWeighting, exposureWeighting);
+		PointList waypoints = new PointList(2, queryGraph.getNodeAccess().is3D());
+		waypoints.add(fromSnap.getSnappedPoint());
+		waypoints.add(toSnap.getSnappedPoint());
+		List<ResponsePath> paths = new ArrayList<>();
+		for (Label label : select(frontier, maxRoutes)) {
+			PathMerger merger = new PathMerger(queryGraph, timeWeighting)
+					.setCalcPoints(true)
+					.setEnableInstructions(true)
+					.setPathDetailsBuilders(hopper.getPathDetailsBuilderFactory(), Collections.singletonList(Parameters.Details.EDGE_ID));
+			ResponsePath path = merger.doWork(waypoints, Collections.singletonList(toPath(queryGraph, fromSnap.getClosestNode(), label)),
+					hopper.getEncodingManager(), hopper.getTranslationMap().getWithFallBack(Locale.US));
+			if (path.hasErrors())
+				throw new IllegalStateException(path.getErrors().toString());
+			paths.add(path);
+		}
+		return paths;
+	}
+
+	/**
+	 * Labels settled by the last route, a node is visited once per label.
+	 */
+	public int getVisitedNodes() {
+		return visitedNodes;
+	}
+
+	private Snap snap(GHPoint point, DefaultSnapFilter snapFilter) {
+		Snap snap = hopper.getLocationIndex().findClosest(point.lat, point.lon, snapFilter);
+		if (!snap.isValid())
+			throw new IllegalArgumentException("Cannot find point " + point);
+		return snap;
+	}
+
+	private List<Label> search(QueryGraph graph, int from, int to, Weighting timeWeighting, Weighting exposureWeighting) {
+		// labels are settled by time, a settled label of the target is part of the frontier
+		PriorityQueue<Label> queue = new PriorityQueue<>(Comparator.<Label>comparingDouble(l -> l.time).thenComparingDouble(l -> l.exposure));
+		IntObjectHashMap<List<Label>> labels = new IntObjectHashMap<>();
+		List<Label> frontier = new ArrayList<>();
+		EdgeExplorer explorer = graph.createEdgeExplorer();
+		Label start = new Label(from, -1, 0, 0, 0, null);
+		add(labels, start);
+		queue.add(start);
+		visitedNodes = 0;
+		while (!queue.isEmpty()) {
+			Label label = queue.poll();
+			if (label.dominated)
+				continue;
+			visitedNodes++;
+			if (label.node == to) {
+				frontier.add(label);
+				continue;
+			}
+			EdgeIterator iter = explorer.setBaseNode(label.node);
+			while (iter.next()) {
+				if (iter.getEdge() == label.edge)
+					continue;
+				if (Double.isInfinite(timeWeighting.calcEdgeWeightWithAccess(iter, false)))
+					continue;
+				double time = timeWeighting.calcEdgeMillis(iter, false);
+				if (label.edge >= 0) {
+					if (Double.isInfinite(timeWeighting.calcTurnWeight(label.edge, label.node, iter.getEdge())))
+						continue;
+					time += timeWeighting.calcTurnMillis(label.edge, label.node, iter.getEdge());
+				}
+				Label next = new Label(iter.getAdjNode(), iter.getEdge(), label.time + time,
+						label.exposure + exposureWeighting.calcEdgeWeight(iter, false), label.distance + iter.getDistance(), label);
+				// a label that is not better than a route to the target can not become one
+				if (covered(frontier, next) || covered(labels.get(next.node), next))
+					continue;
+				if (add(labels, next))
+					queue.add(next);
+			}
+		}
+		return frontier;
+	}
+
+	private boolean covered(List<Label> labels, Label label) {
+		if (labels == null)
+			return false;
+		for (Label other : labels) {
+			if (other.time <= label.time * (1 + epsilon) && other.exposure <= label.exposure * (1 + epsilon))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean add(IntObjectHashMap<List<Label>> labels, Label label) {
+		List<Label> nodeLabels = labels.get(label.node);
+		if (nodeLabels == null) {
+			nodeLabels = new ArrayList<>();
+			labels.put(label.node, nodeLabels);
+		}
+		for (int i = nodeLabels.size() - 1; i >= 0; i--) {
+			Label other = nodeLabels.get(i);
+			if (label.time <= other.time && label.exposure <= other.exposure) {
+				other.dominated = true;
+				nodeLabels.remove(i);
+			}
+		}
+		if (nodeLabels.size() >= maxLabels)
+			return false;
+		nodeLabels.add(label);
+		return true;
+	}
+
+	// the fastest and the least exposed route and evenly spread ones in between
+	private static List<Label> select(List<Label> frontier, int maxRoutes) {
+		if (frontier.size() <= maxRoutes)
+			return frontier;
+		List<Label> selected = new ArrayList<>();
+		for (int i = 0; i < maxRoutes; i++) {
+			selected.add(frontier.get((int) Math.round(i * (frontier.size() - 1) / (double) (maxRoutes - 1))));
+		}
+		return selected;
+	}
+
+	private static Path toPath(QueryGraph graph, int from, Label label) {
+		IntArrayList edges = new IntArrayList();
+		for (Label l = label; l.parent != null; l = l.parent) {
+			edges.add(l.edge);
+		}
+		Path path = new Path(graph);
+		path.setFromNode(from);
+		for (int i = edges.size() - 1; i >= 0; i--) {
+			path.addEdge(edges.get(i));
+		}
+		return path.setEndNode(label.node)
+				.setTime(Math.round(label.time))
+				.setDistance(label.distance)
+				.setWeight(label.exposure)
+				.setFound(true);
+	}
+}
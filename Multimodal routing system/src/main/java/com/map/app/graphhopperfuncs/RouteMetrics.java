@@ -0,0 +1,133 @@
+package com.map.app.graphhopperfuncs;
+
+import java.util.List;
+
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.details.PathDetail;
+import com.map.app.service.ModeInhalationRate;
+import com.map.app.service.TransportMode;
+
+/**
+ * The scores of a route, accumulated in one pass over the edge ids of the route. The smoke and
+ * time of every edge are read once from the edge data version the route was calculated with.
+ * A route edge counts with its whole smoke and time once, also if the route starts or ends on it
+ * or a snapped point splits it into parts that follow each other. The matrix and the isochrone
+ * count their path edges by the same rule, see {@link #edgeConcentration} and {@link #edgeExposure}.
+ */
+public class RouteMetrics {
+	private final EdgeDataSnapshot snapshot;
+	private final TransportMode mode;
+	private final double inhalationRate;
+	private double distance;
+	private long time;
+	// sums over the edges
+	private double smoke;
+	private double edgeTime;
+	private double exposure;
+	// the base edge that was added last, -1 before the first one
+	private int lastEdge = -1;
+
+	public RouteMetrics(EdgeDataSnapshot snapshot, TransportMode mode) {
+		this.snapshot = snapshot;
+		this.mode = mode;
+		this.inhalationRate = ModeInhalationRate.valueOf(mode.toString()).getNumVal();
+	}
+
+	/**
+	 * The metrics of a route calculated with the {@link Parameters.Details#EDGE_ID} details.
+	 */
+	public static RouteMetrics of(ResponsePath path, EdgeDataSnapshot snapshot, TransportMode mode) {
+		RouteMetrics metrics = new RouteMetrics(snapshot, mode);
+		metrics.distance = path.getDistance();
+		metrics.time = path.getTime();
+		List<PathDetail> edgeIds = path.getPathDetails().get(Parameters.Details.EDGE_ID);
+		if (edgeIds == null)
+			throw new IllegalArgumentException("The route has no " + Parameters.Details.EDGE_ID + " details");
+		metrics.addEdges(edgeIds);
+		return metrics;
+	}
+
+	public RouteMetrics addEdges(List<PathDetail> edgeIds) {
+		for (PathDetail detail : edgeIds) {
+			addEdge((Integer) detail.getValue());
+		}
+		return this;
+	}
+
+	public RouteMetrics addEdge(int edge) {
+		if (!counts(lastEdge, edge))
+			return this;
+		lastEdge = edge;
+		double edgeSmoke = snapshot.getSmoke(edge);
+		double t = snapshot.getTime(mode, edge);
+		smoke += edgeSmoke;
+		edgeTime += t;
+		exposure += edgeSmoke * t;
+		return this;
+	}
+
+	/**
+	 * The concentration a base edge adds to a path that ends with the previous edge, for searches
+	 * that extend their paths edge by edge.
+	 * @param previousEdge the base edge before it on the path, -1 at the start
+	 */
+	public static double edgeConcentration(EdgeDataSnapshot snapshot, int previousEdge, int edge) {
+		return counts(previousEdge, edge) ? snapshot.getSmoke(edge) : 0;
+	}
+
+	/**
+	 * The exposure a base edge adds to a path that ends with the previous edge, smoke times travel
+	 * time before the 10^3 scaling of {@link #getExposure}.
+	 */
+	public static double edgeExposure(EdgeDataSnapshot snapshot, TransportMode mode, int previousEdge, int edge) {
+		return counts(previousEdge, edge) ? snapshot.getSmoke(edge) * snapshot.getTime(mode, edge) : 0;
+	}
+
+	// the parts of a split edge that follow each other are one edge, like the edge id details
+	private static boolean counts(int previousEdge, int edge) {
+		return edge != previousEdge;
+	}
+
+	/**
+	 * Meters.
+	 */
+	public double getDistance() {
+		return distance;
+	}
+
+	/**
+	 * Milliseconds, including turn costs.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Sum of the smoke of the route edges, micro gm / m^3.
+	 */
+	public double getConcentration() {
+		return smoke;
+	}
+
+	/**
+	 * Smoke of the route edges weighted by their travel time, micro gm / m^3.
+	 */
+	public double getMeanConcentration() {
+		return edgeTime == 0 ? 0 : exposure / edgeTime;
+	}
+
+	/**
+	 * Smoke times travel time of the route edges, 10^3 micro gm s / m^3.
+	 */
+	public double getExposure() {
+		return exposure / 1000;
+	}
+
+	/**
+	 * Exposure times the inhalation rate of the mode, 10^3.
+	 */
+	public double getInhaledDose() {
+		return exposure * inhalationRate / 1000;
+	}
+}
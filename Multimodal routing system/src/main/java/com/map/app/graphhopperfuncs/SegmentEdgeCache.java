@@ -0,0 +1,258 @@
+package com.map.app.graphhopperfuncs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntHashSet;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.matching.EdgeMatch;
+import com.graphhopper.matching.MapMatching;
+import com.graphhopper.matching.Observation;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+
+/**
+ * The graph edges of the traffic segments, keyed by a hash of the segment shape. A shape is
+ * map matched the first time it is seen, later refreshes only look up the edges. The new shapes
+ * of a feed are matched in parallel. Shapes that cannot be matched fall back to the closest edge
+ * of every point. A shape that was in none of the last maxFeeds feeds is dropped.
+ * The cache can be kept in a file, it is only loaded for the same import of the graph.
+ */
+public class SegmentEdgeCache {
+	// "SEGC"
+	private static final int MAGIC = 0x53454743;
+	private static final int FORMAT = 2;
+	// set by GraphHopper at every import and stored with the graph
+	private static final String IMPORT_DATE = "datareader.import.date";
+	// the shapes are matched by distance, the live speeds of the fastest profiles should not move them
+	private static final String PROFILE = "shortest_car";
+	// meters, traffic shapes are much closer to the road than a GPS track
+	private static final double MEASUREMENT_ERROR = 20;
+
+	private final GraphHopper hopper;
+	private final String file;
+	private final int maxFeeds;
+	private final ExecutorService executor;
+	// guarded by this
+	private final Map<Long, Entry> edges = new HashMap<>();
+	private int feeds;
+	private boolean changed;
+
+	private static class Entry {
+		final int[] edges;
+		// the last feed with the shape
+		int feed;
+
+		Entry(int[] edges, int feed) {
+			this.edges = edges;
+			this.feed = feed;
+		}
+	}
+
+	/**
+	 * @param file the file of the cache, null to keep it in memory only
+	 * @param threads the threads that match new shapes
+	 * @param maxFeeds the feeds a shape is kept without being seen
+	 */
+	public SegmentEdgeCache(GraphHopper hopper, String file, int threads, int maxFeeds) {
+		this.hopper = hopper;
+		this.file = file;
+		this.maxFeeds = maxFeeds;
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			Thread thread = new Thread(r, "segment-match-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		load();
+	}
+
+	/**
+	 * The edges of the segments of one feed, each in the order of its shape and every edge once.
+	 */
+	public synchronized int[][] getEdges(float[][] lats, float[][] lons) {
+		int feed = ++feeds;
+		int[][] segmentEdges = new int[lats.length][];
+		long[] keys = new long[lats.length];
+		// the first segment of every new shape and its match
+		IntArrayList newShapes = new IntArrayList();
+		Map<Long, Future<int[]>> matches = new HashMap<>();
+		for (int i = 0; i < lats.length; i++) {
+			keys[i] = key(lats[i], lons[i]);
+			Entry entry = edges.get(keys[i]);
+			if (entry != null) {
+				entry.feed = feed;
+				segmentEdges[i] = entry.edges;
+			} else if (!matches.containsKey(keys[i])) {
+				float[] segmentLats = lats[i];
+				float[] segmentLons = lons[i];
+				newShapes.add(i);
+				matches.put(keys[i], executor.submit(() -> match(segmentLats, segmentLons)));
+			}
+		}
+		for (int n = 0; n < newShapes.size(); n++) {
+			int first = newShapes.get(n);
+			edges.put(keys[first], new Entry(matched(matches.get(keys[first]), lats[first], lons[first]), feed));
+		}
+		for (int i = 0; i < lats.length; i++) {
+			if (segmentEdges[i] == null)
+				segmentEdges[i] = edges.get(keys[i]).edges;
+		}
+		int before = edges.size();
+		edges.values().removeIf(entry -> feed - entry.feed >= maxFeeds);
+		if (!newShapes.isEmpty() || edges.size() < before)
+			changed = true;
+		return segmentEdges;
+	}
+
+	public synchronized int size() {
+		return edges.size();
+	}
+
+	/**
+	 * The key of a segment shape, equal for the same shape in every refresh.
+	 */
+	public static long key(float[] lats, float[] lons) {
+		// 64 bit FNV-1a over the coordinate bits
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < lats.length; i++) {
+			hash = (hash ^ Float.floatToIntBits(lats[i])) * 0x100000001b3L;
+			hash = (hash ^ Float.floatToIntBits(lons[i])) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private int[] matched(Future<int[]> match, float[] lats, float[] lons) {
+		try {
+			return match.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while matching the traffic segments", e);
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			return closestEdges(lats, lons);
+		}
+	}
+
+	private int[] match(float[] lats, float[] lons) {
+		if (lats.length > 1) {
+			List<Observation> observations = new ArrayList<>(lats.length);
+			for (int i = 0; i < lats.length; i++) {
+				observations.add(new Observation(new GHPoint(lats[i], lons[i])));
+			}
+			try {
+				MapMatching mapMatching = new MapMatching(hopper, new PMap().putObject("profile", PROFILE).putObject("lm.disable", true));
+				mapMatching.setMeasurementErrorSigma(MEASUREMENT_ERROR);
+				IntArrayList matched = new IntArrayList();
+				IntHashSet seen = new IntHashSet();
+				for (EdgeMatch edgeMatch : mapMatching.match(observations).getEdgeMatches()) {
+					int edge = edgeMatch.getEdgeState().getEdge();
+					if (seen.add(edge))
+						matched.add(edge);
+				}
+				if (!matched.isEmpty())
+					return matched.toArray();
+			} catch (IllegalArgumentException e) {
+				// no route between the candidates of two points, e.g. a shape that leaves the graph
+			}
+		}
+		return closestEdges(lats, lons);
+	}
+
+	private int[] closestEdges(float[] lats, float[] lons) {
+		IntArrayList closest = new IntArrayList();
+		IntHashSet seen = new IntHashSet();
+		for (int i = 0; i < lats.length; i++) {
+			Snap snap = hopper.getLocationIndex().findClosest(lats[i], lons[i], EdgeFilter.ALL_EDGES);
+			if (snap.isValid() && seen.add(snap.getClosestEdge().getEdge()))
+				closest.add(snap.getClosestEdge().getEdge());
+		}
+		return closest.toArray();
+	}
+
+	// the import of the graph the edge ids belong to
+	private String graphId() {
+		return hopper.getGraphHopperStorage().getProperties().get(IMPORT_DATE) + "," + hopper.getGraphHopperStorage().getNodes()
+				+ "," + hopper.getGraphHopperStorage().getEdges();
+	}
+
+	private void load() {
+		if (file == null || !new File(file).exists())
+			return;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT || !in.readUTF().equals(graphId())) {
+				System.out.println("Segment edge cache " + file + " is for another graph, matching again");
+				return;
+			}
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				long key = in.readLong();
+				// the feeds since the shape was seen, the first feed of this run is 1
+				int age = in.readInt();
+				int[] segmentEdges = new int[in.readInt()];
+				for (int j = 0; j < segmentEdges.length; j++) {
+					segmentEdges[j] = in.readInt();
+				}
+				edges.put(key, new Entry(segmentEdges, -age));
+			}
+			System.out.println("Loaded the edges of " + size + " traffic segments");
+		} catch (IOException e) {
+			edges.clear();
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes the cache if segments were matched or dropped since the last save.
+	 */
+	public synchronized void save() {
+		if (file == null || !changed)
+			return;
+		changed = false;
+		File tmp = new File(file + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT);
+			out.writeUTF(graphId());
+			out.writeInt(edges.size());
+			for (Map.Entry<Long, Entry> entry : edges.entrySet()) {
+				out.writeLong(entry.getKey());
+				out.writeInt(feeds - entry.getValue().feed);
+				out.writeInt(entry.getValue().edges.length);
+				for (int edge : entry.getValue().edges) {
+					out.writeInt(edge);
+				}
+			}
+		} catch (IOException e) {
+			changed = true;
+			e.printStackTrace();
+			return;
+		}
+		try {
+			Files.move(tmp.toPath(), new File(file).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			changed = true;
+			e.printStackTrace();
+		}
+	}
+}
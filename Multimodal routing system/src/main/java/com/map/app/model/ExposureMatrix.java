@@ -0,0 +1,57 @@
+package com.map.app.model;
+
+/**
+ * The values between every source and target, indexed by [source][target] and in the units
+ * of the route summary. A cell is null if a point was not found or the target is not reachable.
+ */
+public class ExposureMatrix {
+	// in km
+	private Double[][] distances;
+	// in minutes
+	private Double[][] times;
+	// micro gm / m^3
+	private Double[][] concentrations;
+	// micro gm s / m^3 (10^3)
+	private Double[][] exposures;
+	private long visitedNodes;
+
+	public Double[][] getDistances() {
+		return distances;
+	}
+
+	public void setDistances(Double[][] distances) {
+		this.distances = distances;
+	}
+
+	public Double[][] getTimes() {
+		return times;
+	}
+
+	public void setTimes(Double[][] times) {
+		this.times = times;
+	}
+
+	public Double[][] getConcentrations() {
+		return concentrations;
+	}
+
+	public void setConcentrations(Double[][] concentrations) {
+		this.concentrations = concentrations;
+	}
+
+	public Double[][] getExposures() {
+		return exposures;
+	}
+
+	public void setExposures(Double[][] exposures) {
+		this.exposures = exposures;
+	}
+
+	public long getVisitedNodes() {
+		return visitedNodes;
+	}
+
+	public void setVisitedNodes(long visitedNodes) {
+		this.visitedNodes = visitedNodes;
+	}
+}
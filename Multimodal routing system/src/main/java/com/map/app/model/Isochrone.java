@@ -0,0 +1,39 @@
+package com.map.app.model;
+
+import java.util.ArrayList;
+
+import com.graphhopper.util.shapes.GHPoint;
+
+/**
+ * The area that can be reached within the budgets of an isochrone request: the geometry of every
+ * reachable road segment and the convex hull around them.
+ */
+public class Isochrone {
+	private ArrayList<ArrayList<GHPoint>> edges = new ArrayList<>();
+	private ArrayList<GHPoint> polygon = new ArrayList<>();
+	private long visitedNodes;
+
+	public ArrayList<ArrayList<GHPoint>> getEdges() {
+		return edges;
+	}
+
+	public void setEdges(ArrayList<ArrayList<GHPoint>> edges) {
+		this.edges = edges;
+	}
+
+	public ArrayList<GHPoint> getPolygon() {
+		return polygon;
+	}
+
+	public void setPolygon(ArrayList<GHPoint> polygon) {
+		this.polygon = polygon;
+	}
+
+	public long getVisitedNodes() {
+		return visitedNodes;
+	}
+
+	public void setVisitedNodes(long visitedNodes) {
+		this.visitedNodes = visitedNodes;
+	}
+}
@@ -0,0 +1,44 @@
+package com.map.app.model;
+
+import com.graphhopper.util.shapes.GHPoint;
+
+/**
+ * The origin and the budgets of an isochrone request.
+ */
+public class IsochroneContainer {
+	private GHPoint Location;
+	private String Vehicle;
+	// in minutes
+	private double TimeLimit;
+	// inhaled dose (10^3), like the dose of a route
+	private double ExposureLimit;
+
+	public GHPoint getLocation() {
+		return Location;
+	}
+	public void setLocation(GHPoint location) {
+		Location = location;
+	}
+	public String getVehicle() {
+		return Vehicle;
+	}
+	public void setVehicle(String vehicle) {
+		Vehicle = vehicle;
+	}
+	public double getTimeLimit() {
+		return TimeLimit;
+	}
+	public void setTimeLimit(double timeLimit) {
+		TimeLimit = timeLimit;
+	}
+	public double getExposureLimit() {
+		return ExposureLimit;
+	}
+	public void setExposureLimit(double exposureLimit) {
+		ExposureLimit = exposureLimit;
+	}
+	public String toString() {
+		return Location + " " + Vehicle + " " + TimeLimit + " " + ExposureLimit;
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.map.app.model;
+
+import java.util.List;
+
+import com.graphhopper.util.shapes.GHPoint;
+
+/**
+ * The sources and targets of a matrix request.
+ */
+public class MatrixContainer {
+	private List<GHPoint> Sources;
+	private List<GHPoint> Targets;
+	private String Vehicle;
+	private String RouteType;
+
+	public List<GHPoint> getSources() {
+		return Sources;
+	}
+	public void setSources(List<GHPoint> sources) {
+		Sources = sources;
+	}
+	public List<GHPoint> getTargets() {
+		return Targets;
+	}
+	public void setTargets(List<GHPoint> targets) {
+		Targets = targets;
+	}
+	public String getVehicle() {
+		return Vehicle;
+	}
+	public void setVehicle(String vehicle) {
+		Vehicle = vehicle;
+	}
+	public String getRouteType() {
+		return RouteType;
+	}
+	public void setRouteType(String routeType) {
+		RouteType = routeType;
+	}
+	public String toString() {
+		return Sources.size() + " sources " + Targets.size() + " targets " + Vehicle + " " + RouteType;
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.map.app.model;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.graphhopper.util.PointList;
+
+/**
+ * Writes the points of a route as an array of {"lat", "lon"} objects, straight from the
+ * point list without a point object per entry.
+ */
+public class PointListSerializer extends StdSerializer<PointList> {
+
+	public PointListSerializer() {
+		super(PointList.class);
+	}
+
+	@Override
+	public void serialize(PointList points, JsonGenerator gen, SerializerProvider provider) throws IOException {
+		gen.writeStartArray(points, points.size());
+		for (int i = 0; i < points.size(); i++) {
+			gen.writeStartObject();
+			gen.writeNumberField("lat", points.getLat(i));
+			gen.writeNumberField("lon", points.getLon(i));
+			gen.writeEndObject();
+		}
+		gen.writeEndArray();
+	}
+}
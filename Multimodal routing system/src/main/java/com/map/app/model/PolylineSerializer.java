@@ -0,0 +1,28 @@
+package com.map.app.model;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.util.PointList;
+
+/**
+ * Writes the points of a route as a Google encoded polyline string with 5 decimal places, the
+ * encoding of the GraphHopper API with points_encoded.
+ */
+public class PolylineSerializer extends StdSerializer<PointList> {
+	// the route JSON with encoded points
+	public static final String MEDIA_TYPE = "application/x-polyline+json";
+	public static final double MULTIPLIER = 1e5;
+
+	public PolylineSerializer() {
+		super(PointList.class);
+	}
+
+	@Override
+	public void serialize(PointList points, JsonGenerator gen, SerializerProvider provider) throws IOException {
+		gen.writeString(ResponsePathSerializer.encodePolyline(points, false, MULTIPLIER));
+	}
+}
@@ -3,15 +3,16 @@ package com.map.app.model;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.BBox;
-import com.graphhopper.util.shapes.GHPoint;
 
 /**
  * @author Siftee
  */
 public class RoutePath {
-    private ArrayList<GHPoint> points;
+    // the points of the calculated route, not copied, a cached route is shared by the requests
+    private PointList points;
     private ArrayList<String> navigationInstruction;
 
     private ArrayList<Double> bounds;
@@ -34,11 +35,12 @@ public class RoutePath {
         this.bounds = bounds;
     }
 
-    public ArrayList<GHPoint> getPoints() {
+    @JsonSerialize(using = PointListSerializer.class)
+    public PointList getPoints() {
         return points;
     }
 
-    public void setPoints(ArrayList<GHPoint> points) {
+    public void setPoints(PointList points) {
         this.points = points;
     }
 
@@ -51,7 +53,7 @@ public class RoutePath {
     }
 
     public RoutePath() {
-        points = new ArrayList<>();
+        points = PointList.EMPTY;
         bounds = new ArrayList<>();
     }
 
@@ -65,9 +67,7 @@ public class RoutePath {
     }
 
     public void fillPath(PointList rp, ArrayList<String> ins) {
-        for (int i = 0; i < rp.size(); i++) {
-            points.add(new GHPoint(rp.getLat(i), rp.getLon(i)));
-        }
+        points = rp;
 
         BBox routeBB = calcBBox2D(rp);
         bounds.add(routeBB.minLat);
@@ -76,4 +76,4 @@ public class RoutePath {
         bounds.add(routeBB.maxLon);
         navigationInstruction = ins;
     }
-}
\ No newline at end of file
+}
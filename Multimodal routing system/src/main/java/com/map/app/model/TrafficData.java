@@ -1,37 +1,37 @@
 package com.map.app.model;
-import java.util.List;
 
 /**
  * @author Siftee
  */
 public class TrafficData {
 
-	private List<List<Float>> lat;
-	private List<List<Float>> lons;
-	private List<List<Float>> speed;
-	private List<List<Float>> time;
-	public List<List<Float>> getLat() {
+	// one row per segment, the speed row holds the actual and the free flow speed
+	private float[][] lat;
+	private float[][] lons;
+	private float[][] speed;
+	private float[][] time;
+	public float[][] getLat() {
 		return lat;
 	}
-	public void setLat(List<List<Float>> lat) {
+	public void setLat(float[][] lat) {
 		this.lat = lat;
 	}
-	public List<List<Float>> getLons() {
+	public float[][] getLons() {
 		return lons;
 	}
-	public void setLons(List<List<Float>> lons) {
+	public void setLons(float[][] lons) {
 		this.lons = lons;
 	}
-	public List<List<Float>> getSpeed() {
+	public float[][] getSpeed() {
 		return speed;
 	}
-	public void setSpeed(List<List<Float>> speed) {
+	public void setSpeed(float[][] speed) {
 		this.speed = speed;
 	}
-	public List<List<Float>> getTime() {
+	public float[][] getTime() {
 		return time;
 	}
-	public void setTime(List<List<Float>> time) {
+	public void setTime(float[][] time) {
 		this.time = time;
 	}
-}
\ No newline at end of file
+}
@@ -9,6 +9,7 @@ public enum PathChoice {
     greenest, /*by air pollution exposure*/
     balanced, /*by travel time and air pollution exposure*/
     shortest, /*by distance*/
+    pareto, /*the trade-offs between travel time and air pollution exposure*/
     all /*all the route types*/
     // see profiles: https://github.com/graphhopper/graphhopper/blob/4.x/docs/core/profiles.md
 }
@@ -0,0 +1,215 @@
+package com.map.app.service;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * The routing settings of config.properties, parsed once. Routes and weightings get
+ * an instance instead of reading the file on every request.
+ */
+public class RoutingConfig {
+	private final int defaultSmoke;
+	private final int defaultTime;
+	private final int uTurnCosts;
+	private final boolean passThrough;
+	private final boolean curbside;
+	private final boolean turnCosts;
+	private final double balancedTimeFactor;
+	private final double balancedPollutionFactor;
+	private final int idwNeighbours;
+	private final double idwCutoffKm;
+	private final int refreshThreads;
+	private final int routeThreads;
+	private final double paretoEpsilon;
+	private final int paretoMaxLabels;
+	private final int paretoMaxRoutes;
+	private final int matrixMaxLocations;
+	private final double isochroneMaxMinutes;
+	private final String outputResults;
+	private final String airQualityFile;
+	private final String segmentCache;
+	private final int segmentCacheMaxFeeds;
+	private final int trafficThreads;
+	private final long trafficExpiryMillis;
+	private final int routeLogQueue;
+	private final long routeLogFlushMillis;
+	private final long routeLogMaxBytes;
+	private final boolean watch;
+	private final boolean graphReimport;
+	private final int routeCacheSize;
+
+	public RoutingConfig(Properties prop) {
+		defaultSmoke = Integer.parseInt(prop.getProperty("default_smoke"));
+		defaultTime = Integer.parseInt(prop.getProperty("default_time"));
+		uTurnCosts = Integer.parseInt(prop.getProperty("u_turn_costs"));
+		passThrough = Boolean.parseBoolean(prop.getProperty("pass_through"));
+		curbside = Boolean.parseBoolean(prop.getProperty("curbside"));
+		turnCosts = Boolean.parseBoolean(prop.getProperty("turn_costs"));
+		balancedTimeFactor = Double.parseDouble(prop.getProperty("balanced_time_factor"));
+		balancedPollutionFactor = Double.parseDouble(prop.getProperty("balanced_pollution_factor"));
+		// IDW only uses the nearest stations within the cutoff
+		idwNeighbours = Integer.parseInt(prop.getProperty("idw_neighbours", "8"));
+		idwCutoffKm = Double.parseDouble(prop.getProperty("idw_cutoff_km", "25"));
+		refreshThreads = Integer.parseInt(prop.getProperty("refresh_threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+		// threads for the routes of all path choices of one request
+		routeThreads = Integer.parseInt(prop.getProperty("route_threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+		// pareto routes: labels closer than epsilon are merged, labels per node and routes in the response are limited
+		paretoEpsilon = Double.parseDouble(prop.getProperty("pareto_epsilon", "0.05"));
+		paretoMaxLabels = Integer.parseInt(prop.getProperty("pareto_max_labels", "16"));
+		paretoMaxRoutes = Integer.parseInt(prop.getProperty("pareto_max_routes", "5"));
+		// sources plus targets of one matrix request
+		matrixMaxLocations = Integer.parseInt(prop.getProperty("matrix_max_locations", "1000"));
+		// largest time limit of an isochrone
+		isochroneMaxMinutes = Double.parseDouble(prop.getProperty("isochrone_max_minutes", "120"));
+		outputResults = prop.getProperty("output_results");
+		// csv of the historical station readings added to the live ones
+		airQualityFile = prop.getProperty("air_quality_file");
+		// file of the traffic segment to edge matches, kept in memory only without it
+		segmentCache = prop.getProperty("segment_cache");
+		// a shape that is in none of this many feeds is dropped from the matches, a day of 10 minute feeds
+		segmentCacheMaxFeeds = Integer.parseInt(prop.getProperty("segment_cache_max_feeds", "144"));
+		// HERE tiles that are fetched and parsed at once
+		trafficThreads = Integer.parseInt(prop.getProperty("traffic_threads", "4"));
+		// a HERE speed that is not refreshed within this time is dropped, 0 keeps it until it is refreshed
+		trafficExpiryMillis = Long.parseLong(prop.getProperty("traffic_expiry_minutes", "90")) * 60 * 1000;
+		// route log: rows waiting for the writer, flush interval and size of a file before it is rotated
+		routeLogQueue = Integer.parseInt(prop.getProperty("route_log_queue", "65536"));
+		routeLogFlushMillis = Long.parseLong(prop.getProperty("route_log_flush_ms", "1000"));
+		routeLogMaxBytes = Long.parseLong(prop.getProperty("route_log_max_mb", "64")) * 1024 * 1024;
+		watch = Boolean.parseBoolean(prop.getProperty("config_watch", "false"));
+		// imports the OSM file on every start instead of loading the stored graph and edge data
+		graphReimport = Boolean.parseBoolean(prop.getProperty("graph_reimport", "false"));
+		// routes kept for repeated requests of the same edge data version, 0 turns the cache off
+		routeCacheSize = Integer.parseInt(prop.getProperty("route_cache_size", "2000"));
+	}
+
+	public static RoutingConfig load(String file) {
+		Properties prop = new Properties();
+		try (FileInputStream ip = new FileInputStream(file)) {
+			prop.load(ip);
+		} catch (IOException e) {
+			throw new RuntimeException("Config properties are not found. Aborting ...");
+		}
+		return new RoutingConfig(prop);
+	}
+
+	public int getDefaultSmoke() {
+		return defaultSmoke;
+	}
+
+	public int getDefaultTime() {
+		return defaultTime;
+	}
+
+	public int getUTurnCosts() {
+		return uTurnCosts;
+	}
+
+	public boolean isPassThrough() {
+		return passThrough;
+	}
+
+	public boolean isCurbside() {
+		return curbside;
+	}
+
+	public boolean isTurnCosts() {
+		return turnCosts;
+	}
+
+	public double getBalancedTimeFactor() {
+		return balancedTimeFactor;
+	}
+
+	public double getBalancedPollutionFactor() {
+		return balancedPollutionFactor;
+	}
+
+	public int getIdwNeighbours() {
+		return idwNeighbours;
+	}
+
+	public double getIdwCutoffKm() {
+		return idwCutoffKm;
+	}
+
+	public int getRefreshThreads() {
+		return refreshThreads;
+	}
+
+	public int getRouteThreads() {
+		return routeThreads;
+	}
+
+	public double getParetoEpsilon() {
+		return paretoEpsilon;
+	}
+
+	public int getParetoMaxLabels() {
+		return paretoMaxLabels;
+	}
+
+	public int getParetoMaxRoutes() {
+		return paretoMaxRoutes;
+	}
+
+	public int getMatrixMaxLocations() {
+		return matrixMaxLocations;
+	}
+
+	public double getIsochroneMaxMinutes() {
+		return isochroneMaxMinutes;
+	}
+
+	public String getOutputResults() {
+		return outputResults;
+	}
+
+	public String getAirQualityFile() {
+		return airQualityFile;
+	}
+
+	public String getSegmentCache() {
+		return segmentCache;
+	}
+
+	public int getSegmentCacheMaxFeeds() {
+		return segmentCacheMaxFeeds;
+	}
+
+	public int getTrafficThreads() {
+		return trafficThreads;
+	}
+
+	public long getTrafficExpiryMillis() {
+		return trafficExpiryMillis;
+	}
+
+	public int getRouteLogQueue() {
+		return routeLogQueue;
+	}
+
+	public long getRouteLogFlushMillis() {
+		return routeLogFlushMillis;
+	}
+
+	public long getRouteLogMaxBytes() {
+		return routeLogMaxBytes;
+	}
+
+	/**
+	 * Whether changes of the file are applied while running, see {@link RoutingConfigStore#watch()}.
+	 */
+	public boolean isWatch() {
+		return watch;
+	}
+
+	public boolean isGraphReimport() {
+		return graphReimport;
+	}
+
+	public int getRouteCacheSize() {
+		return routeCacheSize;
+	}
+}
@@ -0,0 +1,89 @@
+package com.map.app.service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link RoutingConfig}. A request reads it once, so a reload never
+ * changes the settings in the middle of a route. Settings that only apply when the
+ * graph is built (turn costs, refresh threads) keep the value of the start.
+ */
+public class RoutingConfigStore {
+	private final Path file;
+	private final AtomicReference<RoutingConfig> current = new AtomicReference<>();
+
+	public RoutingConfigStore(String file) {
+		this.file = Paths.get(file).toAbsolutePath();
+		current.set(RoutingConfig.load(file));
+	}
+
+	public RoutingConfigStore(RoutingConfig config) {
+		this.file = null;
+		current.set(config);
+	}
+
+	/**
+	 * The file of the settings, null if they were not loaded from a file.
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	public RoutingConfig getCurrent() {
+		return current.get();
+	}
+
+	/**
+	 * Reloads the file, an invalid file keeps the current settings.
+	 */
+	public void reload() {
+		try {
+			current.set(RoutingConfig.load(file.toString()));
+			System.out.println("Reloaded " + file);
+		} catch (RuntimeException e) {
+			System.err.println("Keeping the current settings, " + file + " is not valid: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Starts a daemon thread which reloads the settings whenever the file changes.
+	 */
+	public void watch() {
+		if (file == null)
+			throw new IllegalStateException("The settings were not loaded from a file");
+		WatchService watchService;
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot watch " + file, e);
+		}
+		Thread thread = new Thread(() -> {
+			try {
+				while (true) {
+					WatchKey key = watchService.take();
+					boolean changed = false;
+					for (WatchEvent<?> event : key.pollEvents()) {
+						changed |= file.getFileName().equals(event.context());
+					}
+					if (changed)
+						reload();
+					if (!key.reset())
+						return;
+				}
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				// stop watching
+			}
+		}, "config-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
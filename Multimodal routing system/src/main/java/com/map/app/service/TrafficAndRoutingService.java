@@ -2,8 +2,6 @@ package com.map.app.service;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.graphhopper.json.Statement;
 
@@ -11,15 +9,25 @@ import com.graphhopper.routing.weighting.custom.CustomProfile;
 import com.graphhopper.util.CustomModel;
 import com.graphhopper.util.shapes.BBox;
 import org.springframework.stereotype.Service;
-import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.ev.UnsignedDecimalEncodedValue;
 //import com.graphhopper.matching.*;
 import com.map.app.containers.AirQualityDataExtractor;
+import com.map.app.containers.HereTileFetcher;
 import com.map.app.containers.TrafficDataExtractor;
+import com.map.app.containers.TrafficTiles;
 import com.map.app.containers.RoutePathContainer;
+import com.map.app.containers.RouteLog;
+import com.map.app.graphhopperfuncs.EdgeAnnotationEngine;
+import com.map.app.graphhopperfuncs.EdgeDataStore;
 import com.map.app.graphhopperfuncs.MyGraphHopper;
+import com.map.app.graphhopperfuncs.SegmentEdgeCache;
+import com.map.app.model.ExposureMatrix;
+import com.map.app.model.Isochrone;
+import com.map.app.model.IsochroneContainer;
+import com.map.app.model.MatrixContainer;
+import com.map.app.model.RouteCacheStats;
 import com.map.app.model.UrlContainer;
 import com.map.app.model.RoutePath;
 import com.map.app.model.TrafficData;
@@ -45,6 +53,8 @@ public class TrafficAndRoutingService {
 
 	private final TrafficDataExtractor trafficDataExtractor;
 	private final RoutePathContainer routePathContainer;
+	private final EdgeDataStore edgeDataStore;
+	private final RoutingConfigStore configStore;
 	private final BBox boundingBox;
 	// a few settings for here maps real-time congestion data
 	public enum SpeedChoice{avg_actual_from_hereMaps, free_flow_from_hereMaps, lower_of_two}
@@ -55,29 +65,41 @@ public class TrafficAndRoutingService {
 		return routePathContainer;
 	}
 
+	public EdgeDataStore getEdgeDataStore() {
+		return edgeDataStore;
+	}
+
+	public RoutingConfigStore getConfigStore() {
+		return configStore;
+	}
+
 	public TrafficAndRoutingService() {
-		ReadWriteLock lock=new ReentrantReadWriteLock();
+		this("config.properties", "graphLocation");
+	}
+
+	/**
+	 * @param configFile the config.properties to use
+	 * @param graphLocation the directory of the stored graph and edge data
+	 */
+	public TrafficAndRoutingService(String configFile, String graphLocation) {
     	GraphHopperConfig config=new GraphHopperConfig();
     	config.putObject("index.max_region_search", 8); // increasing the search radius (a point in Rajaji forest is not able to find any road)
-    	GraphHopper gh=new MyGraphHopper();
-		int defaultSmoke;
-		int defaultTime;
-		boolean turnCosts;
+		// the routing settings are parsed once, routes and weightings read them from the store
+		configStore = new RoutingConfigStore(configFile);
+		RoutingConfig routingConfig = configStore.getCurrent();
+		int defaultSmoke = routingConfig.getDefaultSmoke();
+		int defaultTime = routingConfig.getDefaultTime();
+		boolean turnCosts = routingConfig.isTurnCosts();
+		if (routingConfig.isWatch())
+			configStore.watch();
+		MyGraphHopper gh=new MyGraphHopper(configStore);
 		Properties prop=new Properties();
-		try (FileInputStream ip = new FileInputStream("config.properties")) {
-			prop.load(ip);
-			defaultSmoke = Integer.parseInt(prop.getProperty("default_smoke"));
-			defaultTime = Integer.parseInt(prop.getProperty("default_time"));
-			turnCosts = Boolean.parseBoolean(prop.getProperty("turn_costs"));
-		} catch (IOException e) {
-			throw new RuntimeException("Config properties are not found. Aborting ...");
-		}
 		UnsignedDecimalEncodedValue smokeEnc=new UnsignedDecimalEncodedValue("smoke",31,0.1, defaultSmoke,true);
 		UnsignedDecimalEncodedValue timeEnc=new UnsignedDecimalEncodedValue("time",31,0.1, defaultTime,true);
 		gh.getEncodingManagerBuilder().add(smokeEnc);
 		gh.getEncodingManagerBuilder().add(timeEnc);
     	//gh.c
-		try (FileInputStream ip = new FileInputStream("config.properties")) {
+		try (FileInputStream ip = new FileInputStream(configFile)) {
 			prop.load(ip);
 			System.out.println("Using OSM file "+ prop.getProperty("datareader.file"));
 			config.putObject("datareader.file",prop.getProperty("datareader.file"));
@@ -85,7 +107,8 @@ public class TrafficAndRoutingService {
 
 			for (PathChoice pc : PathChoice.values()) {
 				for (TransportMode tm : TransportMode.values()) {
-					if(!pc.toString().equals("all"))
+					// pareto routes are searched with the fastest and greenest profiles
+					if(!pc.toString().equals("all") && pc != PathChoice.pareto)
 						if (tm.toString().equals("foot"))
 							profiles.add(new Profile(TrafficAndRoutingService.getModeBasedPathChoice(pc, tm)).setVehicle(tm.toString()).setWeighting(pc.toString()));
 						else
@@ -104,6 +127,15 @@ public class TrafficAndRoutingService {
 			metro_custom_model.addToPriority(Statement.If( "road_class != TRUNK", Statement.Op.LIMIT, 0.1));
 			profiles.add(new CustomProfile("metro").setCustomModel(metro_custom_model).setVehicle("car").setTurnCosts(turnCosts));
 			config.setProfiles(profiles);
+			// landmarks speed up the routes of the listed profiles (comma separated), by default all greenest and balanced ones
+			String profilesLM = prop.getProperty("profiles_lm");
+			List<String> lmProfiles = new ArrayList<>();
+			for (Profile profile : profiles) {
+				if (profilesLM == null ? profile.getWeighting().equals("greenest") || profile.getWeighting().equals("balanced")
+						: Arrays.asList(profilesLM.split("\\s*,\\s*")).contains(profile.getName()))
+					lmProfiles.add(profile.getName());
+			}
+			gh.setLandmarkProfiles(lmProfiles);
 			config.putObject("graph.flag_encoders",prop.getProperty("graph.flag_encoders"));
 			config.putObject("graph.dataaccess", prop.getProperty("graph.dataaccess"));
 			config.putObject("profiles_ch", prop.getProperty("profiles_ch"));
@@ -114,15 +146,26 @@ public class TrafficAndRoutingService {
 			throw new RuntimeException("Config properties are not found. Aborting ...");
 		}
 
-    	gh.init(config).setGraphHopperLocation("graphLocation");
+    	gh.init(config).setGraphHopperLocation(graphLocation);
     	//System.out.println(gh.getEncodingManager().getDecimalEncodedValue("smoke"));
-    	gh.clean();   	
-    	gh.importOrLoad();
+    	// a restart loads the stored graph and the edge data of the last refresh instead of importing
+    	gh.loadOrImport(routingConfig.isGraphReimport());
     	//gh.set
     	this.boundingBox = gh.getGraphHopperStorage().getBaseGraph().getBounds();
-    	trafficDataExtractor = new TrafficDataExtractor(gh,lock.writeLock());
-    	routePathContainer = new RoutePathContainer(gh, lock.readLock());
-    	airQualityDataExtractor = new AirQualityDataExtractor(gh,lock.writeLock());
+    	// routing reads smoke, time and live speed from published snapshots, refreshes never block it
+    	edgeDataStore = gh.getEdgeDataStore();
+    	edgeDataStore.init(gh.getGraphHopperStorage().getEdges());
+    	// the landmarks follow the edge data versions in the background
+    	gh.prepareLandmarks();
+    	EdgeAnnotationEngine engine = new EdgeAnnotationEngine(routingConfig.getRefreshThreads());
+    	trafficDataExtractor = new TrafficDataExtractor(gh, engine, edgeDataStore, new SegmentEdgeCache(gh, routingConfig.getSegmentCache(),
+    			routingConfig.getRefreshThreads(), routingConfig.getSegmentCacheMaxFeeds()),
+    			new HereTileFetcher(HereTileFetcher.FLOW_URL, routingConfig.getTrafficThreads()), configStore);
+    	// one csv row per route in the output_results directory, written in the background
+    	RouteLog routeLog = routingConfig.getOutputResults() == null ? null : new RouteLog(routingConfig.getOutputResults(),
+    			routingConfig.getRouteLogQueue(), routingConfig.getRouteLogFlushMillis(), routingConfig.getRouteLogMaxBytes());
+    	routePathContainer = new RoutePathContainer(gh, edgeDataStore, configStore, routeLog);
+    	airQualityDataExtractor = new AirQualityDataExtractor(gh, engine, edgeDataStore, configStore);
     }
 	
 	public static String getModeBasedPathChoice(PathChoice pathChoice, TransportMode transportMode) {
@@ -143,6 +186,10 @@ public class TrafficAndRoutingService {
 	{
 		return trafficDataExtractor.getRoads();
 	}
+
+	public TrafficTiles.Tile getTrafficTile(int z, int x, int y, long since) {
+		return trafficDataExtractor.getTiles().getTile(z, x, y, since);
+	}
 	
 	public void start() {
 		trafficDataExtractor.readHEREMapData(apiKey, this.boundingBox);
@@ -155,4 +202,16 @@ public class TrafficAndRoutingService {
 		return routePathContainer.find(p);
 	}
 
+	public ExposureMatrix getMatrix(MatrixContainer m) {
+		return routePathContainer.matrix(m);
+	}
+
+	public Isochrone getIsochrone(IsochroneContainer c) {
+		return routePathContainer.isochrone(c);
+	}
+
+	public RouteCacheStats getRouteCacheStats() {
+		return routePathContainer.getRouteCacheStats();
+	}
+
 }
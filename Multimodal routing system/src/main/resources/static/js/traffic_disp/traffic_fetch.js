@@ -1,26 +1,109 @@
 /*
 Making an ajax call request to fetch traffic information from backend to be fetched andr rendered every 10 minutes
+Only the tiles of the map view are fetched, a tile that was fetched before only asks for the changes since its version
 */
 roadsJson = {};
+// the tile zoom of the server index, the server answers a higher zoom with this one
+var TRAFFIC_TILE_ZOOM = 14;
+// "z/x/y" -> {version, segments: {id: {lat, lons, speed}}}
+var trafficTiles = {};
+var trafficTimer = null;
+
 function traffic_info() {
     var checkbox = document.getElementById("traffic_disp");
     if (checkbox.checked == false) {
         map.removeLayer(trafficLayer);
+        map.off("moveend", fetch_traffic_tiles);
+        clearTimeout(trafficTimer);
     } else {
-
         trafficLayer.addTo(map);
-        $.ajax({
-            type: "GET",
-            url: "/traffic",
-            dataType: "json",
-            success: function(data) {
-                console.log(data);
-                roadsJson["roads"] = data;
-                trafficLayer.redraw();
-                setTimeout(function() {
-                    traffic_info();
-                }, 60 *60* 1000);
+        map.on("moveend", fetch_traffic_tiles);
+        fetch_traffic_tiles();
+    }
+}
+
+function fetch_traffic_tiles() {
+    clearTimeout(trafficTimer);
+    // tiles of 4 times the width of the map tiles, a few for a screen
+    var z = Math.max(0, Math.min(map.getZoom() - 2, TRAFFIC_TILE_ZOOM));
+    var bounds = map.getBounds();
+    var minX = lon_to_tile_x(bounds.getWest(), z), maxX = lon_to_tile_x(bounds.getEast(), z);
+    var minY = lat_to_tile_y(bounds.getNorth(), z), maxY = lat_to_tile_y(bounds.getSouth(), z);
+    // tiles of another zoom or out of the view are dropped
+    var visible = {};
+    for (let x = minX; x <= maxX; x++) {
+        for (let y = minY; y <= maxY; y++) {
+            visible[z + "/" + x + "/" + y] = true;
+        }
+    }
+    for (let key in trafficTiles) {
+        if (!visible[key])
+            delete trafficTiles[key];
+    }
+    for (let key in visible) {
+        fetch_traffic_tile(key);
+    }
+    render_traffic_tiles();
+    trafficTimer = setTimeout(fetch_traffic_tiles, 10 * 60 * 1000);
+}
+
+function fetch_traffic_tile(key) {
+    var tile = trafficTiles[key];
+    $.ajax({
+        type: "GET",
+        url: "/traffic/tiles/" + key + (tile ? "?since=" + tile.version : ""),
+        dataType: "json",
+        // sends the ETag of the last answer of this url, an unchanged tile comes back as 304
+        ifModified: true,
+        success: function(data, status) {
+            if (status == "notmodified" || data == null)
+                return;
+            var current = trafficTiles[key];
+            if (current == null || data.since == null || data.since != current.version) {
+                // all segments of the tile
+                current = {segments: {}};
+            }
+            current.version = data.version;
+            for (let i = 0; i < data.ids.length; i++) {
+                current.segments[data.ids[i]] = {lat: data.lat[i], lons: data.lons[i], speed: data.speed[i]};
+            }
+            if (data.removed != null) {
+                for (let i = 0; i < data.removed.length; i++) {
+                    delete current.segments[data.removed[i]];
+                }
             }
-        })
+            trafficTiles[key] = current;
+            render_traffic_tiles();
+        }
+    })
+}
+
+// the segments of all tiles in the arrays of TrafficData for the traffic layer, every segment once
+function render_traffic_tiles() {
+    var roads = {lat: [], lons: [], speed: []};
+    var added = {};
+    for (let key in trafficTiles) {
+        var segments = trafficTiles[key].segments;
+        for (let id in segments) {
+            if (added[id])
+                continue;
+            added[id] = true;
+            roads.lat.push(segments[id].lat);
+            roads.lons.push(segments[id].lons);
+            roads.speed.push(segments[id].speed);
+        }
     }
-}
\ No newline at end of file
+    roadsJson["roads"] = roads;
+    trafficLayer.redraw();
+}
+
+function lon_to_tile_x(lon, z) {
+    var x = Math.floor((lon + 180) / 360 * Math.pow(2, z));
+    return Math.min(Math.max(x, 0), Math.pow(2, z) - 1);
+}
+
+function lat_to_tile_y(lat, z) {
+    var rad = lat * Math.PI / 180;
+    var y = Math.floor((1 - Math.log(Math.tan(rad) + 1 / Math.cos(rad)) / Math.PI) / 2 * Math.pow(2, z));
+    return Math.min(Math.max(y, 0), Math.pow(2, z) - 1);
+}
@@ -0,0 +1,40 @@
+package com.map.app.containers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import com.map.app.model.AirQuality;
+
+class AirQualityDataExtractorTest {
+
+	@Test
+	void stationsWithAReading() throws IOException {
+		ArrayList<AirQuality> stations;
+		try (InputStream in = getClass().getResourceAsStream("waqi_bounds.json")) {
+			stations = AirQualityDataExtractor.readStations(in);
+		}
+		// "-", null and a missing latitude are left out
+		assertEquals(2, stations.size());
+		assertEquals(25.3176, stations.get(0).getLat());
+		assertEquals(82.9739, stations.get(0).getLon());
+		assertEquals(87, stations.get(0).getAqi());
+		assertEquals("Ardhali Bazar, Varanasi", stations.get(0).getStationName());
+		// a numeric aqi and a null name
+		assertEquals(25.28, stations.get(1).getLat());
+		assertEquals(155, stations.get(1).getAqi());
+		assertNull(stations.get(1).getStationName());
+	}
+
+	@Test
+	void noData() throws IOException {
+		// an invalid key is answered with a message instead of the stations
+		assertNull(AirQualityDataExtractor.readStations(HereFlowReaderTest.json("{\"status\":\"error\",\"data\":\"Invalid key\"}")));
+		assertEquals(0, AirQualityDataExtractor.readStations(HereFlowReaderTest.json("{\"status\":\"ok\",\"data\":[]}")).size());
+	}
+}
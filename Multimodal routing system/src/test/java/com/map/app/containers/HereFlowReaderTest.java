@@ -0,0 +1,60 @@
+package com.map.app.containers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.map.app.model.TrafficData;
+
+class HereFlowReaderTest {
+
+	@Test
+	void segmentsThatPassTheFilter() throws IOException {
+		TrafficData data = read(4);
+		assertEquals(2, data.getLat().length);
+		// the null point is left out, quoted numbers are parsed, nested arrays are skipped
+		assertArrayEquals(new float[]{25.3176f, 25.3181f}, data.getLat()[0]);
+		assertArrayEquals(new float[]{82.9739f, 82.9751f}, data.getLons()[0]);
+		// the speed of the segment, not of its sub segments
+		assertArrayEquals(new float[]{30.5f, 50f}, data.getSpeed()[0]);
+		// a null actual speed is 0, the confidence is quoted
+		assertArrayEquals(new float[]{25.36f, 25.37f}, data.getLat()[1]);
+		assertArrayEquals(new float[]{83.03f, 83.04f}, data.getLons()[1]);
+		assertArrayEquals(new float[]{0f, 45f}, data.getSpeed()[1]);
+	}
+
+	@Test
+	void roadClassFilter() throws IOException {
+		// class 5 and the segment without a class, which counts as 5, are kept too
+		TrafficData data = read(5);
+		assertEquals(4, data.getLat().length);
+		assertArrayEquals(new float[]{25.32f}, data.getLat()[1]);
+		assertArrayEquals(new float[]{21f, 41f}, data.getSpeed()[1]);
+		assertArrayEquals(new float[]{25.33f}, data.getLat()[2]);
+		assertArrayEquals(new float[]{83.03f, 83.04f}, data.getLons()[3]);
+	}
+
+	@Test
+	void noResults() throws IOException {
+		assertNull(new HereFlowReader(4).read(json("{\"sourceUpdated\":\"2026-10-17T05:00:00Z\"}")));
+		assertNull(new HereFlowReader(4).read(json("[]")));
+		assertEquals(0, new HereFlowReader(4).read(json("{\"results\":[]}")).getLat().length);
+	}
+
+	private TrafficData read(float maxFunctionalClass) throws IOException {
+		try (InputStream in = getClass().getResourceAsStream("here_flow.json")) {
+			return new HereFlowReader(maxFunctionalClass).read(in);
+		}
+	}
+
+	static InputStream json(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,132 @@
+package com.map.app.containers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.graphhopper.util.shapes.BBox;
+import com.map.app.model.TrafficData;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class HereTileFetcherTest {
+	private static final long TILE_MILLIS = 300;
+
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private final AtomicInteger requests = new AtomicInteger();
+	// tiles with a min longitude in this set fail
+	private final Set<Double> failing = new HashSet<>();
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.createContext("/v7/flow", this::handle);
+		server.start();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	@Test
+	void tilesAreFetchedAtOnceAndMerged() {
+		HereTileFetcher fetcher = new HereTileFetcher(url(), 4);
+		// 2 x 2 tiles
+		BBox box = new BBox(82.0, 84.0, 25.0, 27.0);
+		TrafficData data = fetcher.fetch("key", box, 4);
+
+		assertEquals(4, requests.get());
+		// every tile request waits TILE_MILLIS, all 4 were open at the same time
+		assertEquals(4, maxInFlight.get());
+		assertEquals(4, data.getLat().length);
+		// one segment in the middle of every tile, in tile order
+		assertEquals(25.5f, data.getLat()[0][0]);
+		assertEquals(82.5f, data.getLons()[0][0]);
+		assertEquals(26.5f, data.getLat()[3][0]);
+		assertEquals(83.5f, data.getLons()[3][0]);
+		assertEquals(30f, data.getSpeed()[0][0]);
+		assertEquals(50f, data.getSpeed()[0][1]);
+	}
+
+	@Test
+	void failedTileIsLeftOut() {
+		failing.add(83.0);
+		TrafficData data = new HereTileFetcher(url(), 2).fetch("key", new BBox(82.0, 84.0, 25.0, 26.0), 4);
+		assertEquals(2, requests.get());
+		assertEquals(1, data.getLat().length);
+		assertEquals(82.5f, data.getLons()[0][0]);
+	}
+
+	@Test
+	void noResults() {
+		failing.add(82.0);
+		assertNull(new HereTileFetcher(url(), 2).fetch("key", new BBox(82.0, 82.5, 25.0, 25.5), 4));
+	}
+
+	@Test
+	void tilesCoverTheBox() {
+		assertEquals(1, HereTileFetcher.tiles(new BBox(82.0, 82.9, 25.0, 25.9)).size());
+		BBox box = new BBox(82.0, 84.5, 25.0, 26.2);
+		double area = 0;
+		for (BBox tile : HereTileFetcher.tiles(box)) {
+			assertTrue(tile.maxLon - tile.minLon <= 1 && tile.maxLat - tile.minLat <= 1, tile.toString());
+			area += (tile.maxLon - tile.minLon) * (tile.maxLat - tile.minLat);
+		}
+		assertEquals(6, HereTileFetcher.tiles(box).size());
+		assertEquals(2.5 * 1.2, area, 1e-9);
+	}
+
+	private String url() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/v7/flow";
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+		try {
+			Thread.sleep(TILE_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		inFlight.decrementAndGet();
+		String query = exchange.getRequestURI().getQuery();
+		String bbox = query.substring(query.indexOf("bbox:") + 5).split("&")[0];
+		double[] v = Arrays.stream(bbox.split(",")).mapToDouble(Double::parseDouble).toArray();
+		if (failing.contains(v[0])) {
+			exchange.sendResponseHeaders(500, -1);
+			exchange.close();
+			return;
+		}
+		String body = String.format(Locale.ROOT, "{\"results\":[{\"location\":{\"functionalClass\":2,\"shape\":{\"coordinates\":"
+				+ "[{\"lat\":%s,\"lng\":%s}]}},\"currentFlow\":{\"speed\":{\"actual\":30,\"freeFlow\":50},\"confidence\":90}}]}",
+				(v[1] + v[3]) / 2, (v[0] + v[2]) / 2);
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
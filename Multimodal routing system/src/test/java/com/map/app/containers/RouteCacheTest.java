@@ -0,0 +1,53 @@
+package com.map.app.containers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import com.map.app.model.RoutePath;
+
+class RouteCacheTest {
+
+	@Test
+	void capacityCountsRoutes() {
+		RouteCache cache = new RouteCache(2);
+		RoutePath[] routes = {new RoutePath(), new RoutePath(), new RoutePath()};
+		cache.put(request(0), snapped(0), routes[0]);
+		cache.put(request(1), snapped(1), routes[1]);
+		assertEquals(2, cache.getStats().getSize());
+		assertEquals(0, cache.getStats().getEvictions());
+		// other coordinates of the same snapped points become an alias of the route
+		assertSame(routes[0], cache.getSnapped(request(10), snapped(0)));
+		assertSame(routes[0], cache.getRequest(request(10)));
+		assertEquals(2, cache.getStats().getSize());
+
+		// route 1 is the least recently used one
+		cache.put(request(2), snapped(2), routes[2]);
+		assertEquals(2, cache.getStats().getSize());
+		assertEquals(1, cache.getStats().getEvictions());
+		assertNull(cache.getRequest(request(1)));
+		assertNull(cache.getSnapped(request(1), snapped(1)));
+		assertSame(routes[0], cache.getRequest(request(0)));
+		assertEquals(3, cache.getStats().getHits());
+		assertEquals(1, cache.getStats().getMisses());
+	}
+
+	@Test
+	void routeWithoutSnappedPointsIsNotKept() {
+		RouteCache cache = new RouteCache(2);
+		cache.put(request(0), null, new RoutePath());
+		assertNull(cache.getRequest(request(0)));
+		assertEquals(0, cache.getStats().getSize());
+	}
+
+	private static RouteCache.Key request(int i) {
+		return new RouteCache.Key("fastest_car", 1, null, 25.3 + i * 0.001, 82.9, 25.4, 83.0);
+	}
+
+	// a key of other coordinates stands for the key of the snapped points
+	private static RouteCache.Key snapped(int i) {
+		return new RouteCache.Key("fastest_car", 1, null, 25.3 + i * 0.001, 82.9001, 25.4001, 83.0);
+	}
+}
@@ -0,0 +1,153 @@
+package com.map.app.containers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.map.app.model.TrafficData;
+
+class TrafficTilesTest {
+	private static final ObjectMapper JSON = new ObjectMapper();
+	private static final int Z = 10;
+
+	// two segments close to each other and one in another index tile of the same zoom 10 tile
+	private static final float[][] A = {{25.3000f, 25.3010f}, {82.9700f, 82.9710f}};
+	private static final float[][] B = {{25.3020f, 25.3030f}, {82.9720f, 82.9730f}};
+	private static final float[][] C = {{25.3600f, 25.3610f}, {83.0500f, 83.0510f}};
+	private static final float[][] D = {{25.3005f, 25.3015f}, {82.9705f, 82.9715f}};
+
+	private TrafficTiles tiles;
+	private int x;
+	private int y;
+
+	@BeforeEach
+	void setUp() {
+		tiles = new TrafficTiles();
+		tiles.publish(data(new float[][][]{A, B, C}, new float[][]{{20, 50}, {10, 50}, {30, 50}}), 3);
+		x = TrafficTiles.lonToTileX(A[1][0], Z);
+		y = TrafficTiles.latToTileY(A[0][0], Z);
+		assertEquals(x, TrafficTiles.lonToTileX(C[1][0], Z));
+		assertEquals(y, TrafficTiles.latToTileY(C[0][0], Z));
+	}
+
+	@Test
+	void fullTile() throws IOException {
+		TrafficTiles.Tile tile = tiles.getTile(Z, x, y, -1);
+		JsonNode json = JSON.readTree(tile.getJson());
+		assertEquals("\"3\"", tile.getEtag());
+		assertEquals(3, json.get("version").asLong());
+		assertEquals(3, json.get("ids").size());
+		assertEquals(3, json.get("speed").size());
+		assertFalse(json.has("since"));
+		assertFalse(json.has("removed"));
+		// served from the cache of the feed
+		assertTrue(tile == tiles.getTile(Z, x, y, -1));
+	}
+
+	@Test
+	void changesSinceThePreviousFeed() throws IOException {
+		Map<Float, Integer> before = idsByFirstLat(JSON.readTree(tiles.getTile(Z, x, y, -1).getJson()));
+		// B slows down, C is gone and D is new
+		tiles.publish(data(new float[][][]{A, B, D}, new float[][]{{20, 50}, {15, 50}, {25, 50}}), 5);
+
+		TrafficTiles.Tile tile = tiles.getTile(Z, x, y, 3);
+		JsonNode json = JSON.readTree(tile.getJson());
+		assertEquals("\"5-3\"", tile.getEtag());
+		assertEquals(3, json.get("since").asLong());
+		Map<Float, Integer> changed = idsByFirstLat(json);
+		assertEquals(Set.of(B[0][0], D[0][0]), changed.keySet());
+		assertEquals(before.get(B[0][0]), changed.get(B[0][0]));
+		assertEquals(15, json.get("speed").get(changedIndex(json, B[0][0])).get(0).floatValue());
+		assertEquals(1, json.get("removed").size());
+		assertEquals((int) before.get(C[0][0]), json.get("removed").get(0).asInt());
+
+		// the same shape keeps its id
+		Map<Float, Integer> after = idsByFirstLat(JSON.readTree(tiles.getTile(Z, x, y, -1).getJson()));
+		assertEquals(before.get(A[0][0]), after.get(A[0][0]));
+		// a version before the previous feed gets the full tile
+		assertFalse(JSON.readTree(tiles.getTile(Z, x, y, 1).getJson()).has("since"));
+		// nothing changed since the last feed
+		JsonNode none = JSON.readTree(tiles.getTile(Z, x, y, 5).getJson());
+		assertEquals(0, none.get("ids").size());
+		assertEquals(0, none.get("removed").size());
+	}
+
+	@Test
+	void shapesOfOlderFeedsAreForgotten() throws IOException {
+		Map<Float, Integer> before = idsByFirstLat(JSON.readTree(tiles.getTile(Z, x, y, -1).getJson()));
+		tiles.publish(data(new float[][][]{A, B}, new float[][]{{20, 50}, {10, 50}}), 5);
+		tiles.publish(data(new float[][][]{A, B}, new float[][]{{20, 50}, {10, 50}}), 7);
+		// C is in neither of the last two feeds, it comes back as a new segment
+		tiles.publish(data(new float[][][]{A, B, C}, new float[][]{{20, 50}, {10, 50}, {30, 50}}), 9);
+		Map<Float, Integer> after = idsByFirstLat(JSON.readTree(tiles.getTile(Z, x, y, -1).getJson()));
+		assertEquals(before.get(A[0][0]), after.get(A[0][0]));
+		assertEquals(before.get(B[0][0]), after.get(B[0][0]));
+		assertFalse(before.containsValue(after.get(C[0][0])));
+		JsonNode changes = JSON.readTree(tiles.getTile(Z, x, y, 7).getJson());
+		assertEquals(Set.of(C[0][0]), idsByFirstLat(changes).keySet());
+	}
+
+	@Test
+	void higherZoomGetsTheIndexTile() {
+		int z = TrafficTiles.INDEX_ZOOM + 2;
+		int indexX = TrafficTiles.lonToTileX(A[1][0], TrafficTiles.INDEX_ZOOM);
+		int indexY = TrafficTiles.latToTileY(A[0][0], TrafficTiles.INDEX_ZOOM);
+		TrafficTiles.Tile indexTile = tiles.getTile(TrafficTiles.INDEX_ZOOM, indexX, indexY, -1);
+		assertArrayEquals(indexTile.getJson(), tiles.getTile(z, TrafficTiles.lonToTileX(A[1][0], z), TrafficTiles.latToTileY(A[0][0], z), -1).getJson());
+		assertTrue(tiles.getTile(TrafficTiles.INDEX_ZOOM, TrafficTiles.lonToTileX(C[1][0], TrafficTiles.INDEX_ZOOM),
+				TrafficTiles.latToTileY(C[0][0], TrafficTiles.INDEX_ZOOM), -1).getJson().length < indexTile.getJson().length);
+	}
+
+	@Test
+	void tileOutsideOfTheZoom() {
+		assertThrows(IllegalArgumentException.class, () -> tiles.getTile(Z, 1 << Z, 0, -1));
+		assertThrows(IllegalArgumentException.class, () -> tiles.getTile(TrafficTiles.MAX_ZOOM + 1, 0, 0, -1));
+		assertTrue(tiles.getTile(Z, 0, 0, -1).isEmpty());
+	}
+
+	private static TrafficData data(float[][][] shapes, float[][] speeds) {
+		float[][] lats = new float[shapes.length][];
+		float[][] lons = new float[shapes.length][];
+		for (int i = 0; i < shapes.length; i++) {
+			lats[i] = shapes[i][0];
+			lons[i] = shapes[i][1];
+		}
+		TrafficData data = new TrafficData();
+		data.setLat(lats);
+		data.setLons(lons);
+		data.setSpeed(speeds);
+		return data;
+	}
+
+	private static Map<Float, Integer> idsByFirstLat(JsonNode json) {
+		Map<Float, Integer> ids = new HashMap<>();
+		Set<Integer> unique = new HashSet<>();
+		for (int i = 0; i < json.get("ids").size(); i++) {
+			int id = json.get("ids").get(i).asInt();
+			assertTrue(unique.add(id));
+			ids.put(json.get("lat").get(i).get(0).floatValue(), id);
+		}
+		return ids;
+	}
+
+	private static int changedIndex(JsonNode json, float firstLat) {
+		for (int i = 0; i < json.get("lat").size(); i++) {
+			if (json.get("lat").get(i).get(0).floatValue() == firstLat)
+				return i;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,173 @@
+package com.map.app.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.util.PointList;
+import com.map.app.containers.RouteDeltaConverter;
+import com.map.app.containers.TrafficTiles;
+import com.map.app.model.ExposureMatrix;
+import com.map.app.model.Isochrone;
+import com.map.app.model.PolylineSerializer;
+import com.map.app.model.RoutePath;
+import com.map.app.model.TrafficData;
+import com.map.app.service.TrafficAndRoutingService;
+
+@WebMvcTest(MapControl.class)
+class MapControlTest {
+	@Autowired
+	private MockMvc mvc;
+
+	@MockBean
+	private TrafficAndRoutingService trs;
+
+	private PointList points;
+
+	@BeforeEach
+	void setUp() {
+		points = new PointList();
+		points.add(25.3176452, 82.9739144);
+		points.add(25.3181021, 82.9751013);
+		points.add(25.3102387, 82.9903452);
+		RoutePath route = new RoutePath();
+		ArrayList<String> instructions = new ArrayList<>();
+		instructions.add("continue onto godowlia road, covering about 140.0 meters");
+		instructions.add("arrive at destination");
+		route.fillPath(points, instructions);
+		HashMap<String, Float> summary = new HashMap<>();
+		summary.put("distance", 1.93f);
+		summary.put("exposure", 12.5f);
+		route.setSummary(summary);
+		ArrayList<RoutePath> routes = new ArrayList<>();
+		routes.add(route);
+		when(trs.getPath(any())).thenReturn(routes);
+	}
+
+	private static MockHttpServletRequestBuilder routing() {
+		return get("/api/routing")
+				.param("StartLoc", "82.9739144,25.3176452")
+				.param("EndLoc", "82.9903452,25.3102387")
+				.param("RouteType", "fastest")
+				.param("Vehicle", "car");
+	}
+
+	@Test
+	void jsonPointsByDefault() throws Exception {
+		mvc.perform(routing())
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$[0].points.length()").value(3))
+				.andExpect(jsonPath("$[0].points[1].lat").value(25.3181021))
+				.andExpect(jsonPath("$[0].points[1].lon").value(82.9751013))
+				.andExpect(jsonPath("$[0].bounds[0]").value(25.3102387))
+				.andExpect(jsonPath("$[0].navigationInstruction[1]").value("arrive at destination"));
+	}
+
+	@Test
+	void polylinePoints() throws Exception {
+		mvc.perform(routing().param("mediaType", "polyline"))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(PolylineSerializer.MEDIA_TYPE))
+				.andExpect(jsonPath("$[0].points").value(ResponsePathSerializer.encodePolyline(points, false, PolylineSerializer.MULTIPLIER)))
+				.andExpect(jsonPath("$[0].summary.distance").value(1.93));
+	}
+
+	@Test
+	void deltaRoundTrip() throws Exception {
+		byte[] body = mvc.perform(routing().accept(RouteDeltaConverter.MEDIA_TYPE))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(RouteDeltaConverter.MEDIA_TYPE))
+				.andReturn().getResponse().getContentAsByteArray();
+		List<RoutePath> routes = RouteDeltaConverter.decode(body);
+		assertEquals(1, routes.size());
+		RoutePath route = routes.get(0);
+		assertEquals(points.size(), route.getPoints().size());
+		for (int i = 0; i < points.size(); i++) {
+			assertEquals(points.getLat(i), route.getPoints().getLat(i), 1e-6);
+			assertEquals(points.getLon(i), route.getPoints().getLon(i), 1e-6);
+		}
+		assertEquals(25.3102387, route.getBounds().get(0));
+		assertEquals(12.5f, route.getSummary().get("exposure"));
+		assertEquals("arrive at destination", route.getNavigationInstruction().get(1));
+	}
+
+	@Test
+	void trafficTileNotModified() throws Exception {
+		TrafficTiles tiles = new TrafficTiles();
+		TrafficData data = new TrafficData();
+		data.setLat(new float[][]{{25.3176452f, 25.3181021f}});
+		data.setLons(new float[][]{{82.9739144f, 82.9751013f}});
+		data.setSpeed(new float[][]{{20, 50}});
+		tiles.publish(data, 4);
+		// the segment is in tile 187/109 of zoom 8
+		when(trs.getTrafficTile(anyInt(), anyInt(), anyInt(), anyLong()))
+				.thenAnswer(call -> tiles.getTile(call.getArgument(0), call.getArgument(1), call.getArgument(2), call.getArgument(3)));
+		String etag = mvc.perform(get("/traffic/tiles/8/187/109"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.version").value(4))
+				.andExpect(jsonPath("$.ids.length()").value(1))
+				.andReturn().getResponse().getHeader("ETag");
+		assertEquals("\"4\"", etag);
+		mvc.perform(get("/traffic/tiles/8/187/109").header("If-None-Match", etag))
+				.andExpect(status().isNotModified());
+		mvc.perform(get("/traffic/tiles/8/187/109").param("since", "4"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.ids.length()").value(0))
+				.andExpect(header().string("ETag", "\"4-4\""));
+		mvc.perform(get("/traffic/tiles/8/256/0"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void malformedMatrixRequest() throws Exception {
+		when(trs.getMatrix(any())).thenReturn(new ExposureMatrix());
+		mvc.perform(get("/api/matrix").param("Sources", "82.97,25.31").param("Targets", "82.99,25.32")
+						.param("RouteType", "fastest").param("Vehicle", "car"))
+				.andExpect(status().isOk());
+		// no targets, a location without latitude, a latitude that is not a number
+		mvc.perform(get("/api/matrix").param("Sources", "82.97,25.31").param("RouteType", "fastest").param("Vehicle", "car"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(get("/api/matrix").param("Sources", "82.97").param("Targets", "82.99,25.32")
+						.param("RouteType", "fastest").param("Vehicle", "car"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(get("/api/matrix").param("Sources", "82.97,north").param("Targets", "82.99,25.32")
+						.param("RouteType", "fastest").param("Vehicle", "car"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void malformedIsochroneRequest() throws Exception {
+		when(trs.getIsochrone(any())).thenReturn(new Isochrone());
+		mvc.perform(get("/api/isochrone").param("Location", "82.97,25.31").param("Vehicle", "foot").param("TimeLimit", "10"))
+				.andExpect(status().isOk());
+		// no time limit, no location, a location without latitude
+		mvc.perform(get("/api/isochrone").param("Location", "82.97,25.31").param("Vehicle", "foot"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(get("/api/isochrone").param("Vehicle", "foot").param("TimeLimit", "10"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(get("/api/isochrone").param("Location", "82.97").param("Vehicle", "foot").param("TimeLimit", "10"))
+				.andExpect(status().isBadRequest());
+	}
+}
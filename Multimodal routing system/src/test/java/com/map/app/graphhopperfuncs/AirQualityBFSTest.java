@@ -0,0 +1,117 @@
+package com.map.app.graphhopperfuncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.map.app.model.AirQuality;
+import com.map.app.service.RoutingConfig;
+
+class AirQualityBFSTest {
+	private static final int DEFAULT_SMOKE = 10;
+
+	@Test
+	void smokeMatchesNodeSweep() {
+		Random random = new Random(7);
+		GraphHopperStorage graph = new GraphBuilder(EncodingManager.create("car")).create();
+		NodeAccess nodeAccess = graph.getNodeAccess();
+		int nodes = 2000;
+		for (int node = 0; node < nodes; node++) {
+			nodeAccess.setNode(node, 25.2 + random.nextDouble() * 0.3, 82.9 + random.nextDouble() * 0.3);
+		}
+		for (int i = 0; i < 3 * nodes; i++) {
+			graph.edge(random.nextInt(nodes), random.nextInt(nodes)).setDistance(100);
+		}
+		ArrayList<AirQuality> stations = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			stations.add(new AirQuality(25.2 + random.nextDouble() * 0.3, 82.9 + random.nextDouble() * 0.3, random.nextInt(450), "station " + i));
+		}
+		// a station on a node has to return its exact aqi
+		stations.add(new AirQuality(nodeAccess.getLat(0), nodeAccess.getLon(0), 321, "on node 0"));
+
+		AirQualityBFS bfs = new AirQualityBFS(graph, stations, new EdgeAnnotationEngine(2), new EdgeDataStore(DEFAULT_SMOKE, 1), config());
+		// with every station as neighbour and no cutoff the interpolation is the full inverse distance weighting
+		float[] smoke = bfs.calcSmoke(new AirQualityIndex(stations, stations.size(), 20000), DEFAULT_SMOKE);
+
+		Map<Integer, Double> expected = nodeSweep(graph, stations, bfs);
+		assertEquals(graph.getEdges(), expected.size());
+		assertEquals(graph.getEdges(), smoke.length);
+		for (Map.Entry<Integer, Double> entry : expected.entrySet()) {
+			assertEquals(entry.getValue(), smoke[entry.getKey()], 1e-4 * entry.getValue(), "edge " + entry.getKey());
+		}
+	}
+
+	@Test
+	void edgesWithoutStationGetDefaultSmoke() {
+		GraphHopperStorage graph = new GraphBuilder(EncodingManager.create("car")).create();
+		graph.getNodeAccess().setNode(0, 25.3, 83.0);
+		graph.getNodeAccess().setNode(1, 25.31, 83.0);
+		graph.getNodeAccess().setNode(2, 26.3, 83.0);
+		graph.edge(0, 1).setDistance(1100);
+		graph.edge(1, 2).setDistance(110000);
+		ArrayList<AirQuality> stations = new ArrayList<>();
+		stations.add(new AirQuality(25.3, 83.0, 400, "near"));
+
+		AirQualityBFS bfs = new AirQualityBFS(graph, stations, new EdgeAnnotationEngine(1), new EdgeDataStore(DEFAULT_SMOKE, 1), config());
+		float[] smoke = bfs.calcSmoke(new AirQualityIndex(stations, 8, 25), DEFAULT_SMOKE);
+		assertEquals(bfs.convToConcentration(400), smoke[0], 1e-4);
+		assertEquals(DEFAULT_SMOKE, smoke[1]);
+	}
+
+	private static RoutingConfig config() {
+		Properties prop = new Properties();
+		prop.setProperty("default_smoke", String.valueOf(DEFAULT_SMOKE));
+		prop.setProperty("default_time", "1");
+		prop.setProperty("u_turn_costs", "40");
+		prop.setProperty("balanced_time_factor", "0.5");
+		prop.setProperty("balanced_pollution_factor", "0.5");
+		return new RoutingConfig(prop);
+	}
+
+	// the former annotation: explore the edges of every node and interpolate over all stations
+	private static Map<Integer, Double> nodeSweep(GraphHopperStorage graph, ArrayList<AirQuality> stations, AirQualityBFS bfs) {
+		Map<Integer, Double> smoke = new HashMap<>();
+		NodeAccess nodeAccess = graph.getNodeAccess();
+		EdgeExplorer explorer = graph.createEdgeExplorer();
+		for (int node = 0; node < graph.getNodes(); node++) {
+			EdgeIterator iter = explorer.setBaseNode(node);
+			while (iter.next()) {
+				if (smoke.containsKey(iter.getEdge()))
+					continue;
+				int adj = iter.getAdjNode();
+				double base = idw(stations, nodeAccess.getLat(node), nodeAccess.getLon(node));
+				double adjacent = idw(stations, nodeAccess.getLat(adj), nodeAccess.getLon(adj));
+				if (Double.isNaN(base) || Double.isNaN(adjacent))
+					smoke.put(iter.getEdge(), (double) DEFAULT_SMOKE);
+				else
+					smoke.put(iter.getEdge(), Math.max(bfs.convToConcentration((base + adjacent) / 2), DEFAULT_SMOKE));
+			}
+		}
+		return smoke;
+	}
+
+	private static double idw(ArrayList<AirQuality> stations, double lat, double lon) {
+		double numer = 0;
+		double denom = 0;
+		for (AirQuality station : stations) {
+			double d = AirQualityIndex.haversine(station.getLat(), station.getLon(), lat, lon);
+			if (d == 0)
+				return station.getAqi();
+			numer += station.getAqi() / Math.pow(d, 2);
+			denom += 1 / Math.pow(d, 2);
+		}
+		return numer / denom;
+	}
+}